@@ -3,11 +3,13 @@ package com.example.qimo;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 
 @SpringBootApplication
 @EnableJpaAuditing
 @EnableMethodSecurity
+@EnableScheduling
 public class QimoApplication {
     public static void main(String[] args) {
         SpringApplication.run(QimoApplication.class, args);
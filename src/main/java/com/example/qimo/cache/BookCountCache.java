@@ -0,0 +1,59 @@
+package com.example.qimo.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 按分类缓存书籍分页的总数，避免每次分页都执行一次 SELECT COUNT(*)。
+ * 缓存项记录计算时的目录版本号，书籍写入后版本号变化，缓存自动失效。
+ */
+@Component
+public class BookCountCache {
+
+    // 缓存项上限，超出后整体清空（键的数量通常只有分类数这个量级）
+    private static final int MAX_ENTRIES = 1024;
+    // 不按分类筛选时的键（ConcurrentHashMap 不接受 null 键）
+    private static final Long ALL = 0L;
+
+    private final CatalogVersion catalogVersion;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BookCountCache(CatalogVersion catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    /**
+     * 获取总数，缓存缺失或已过期时调用 counter 重新计算
+     * @param categoryId 分类ID，可为null
+     * @param counter 实际的计数查询
+     * @return 总数
+     */
+    public long get(Long categoryId, LongSupplier counter) {
+        Long key = categoryId != null ? categoryId : ALL;
+        // 先读取版本号再计数：计数期间若有写入，缓存项的版本号已过期，下次读取会重新计算
+        long version = catalogVersion.current();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == version) {
+            return entry.total;
+        }
+        long total = counter.getAsLong();
+        if (entries.size() >= MAX_ENTRIES) entries.clear();
+        entries.put(key, new Entry(version, total));
+        return total;
+    }
+
+    private static final class Entry {
+        final long version;
+        final long total;
+
+        Entry(long version, long total) {
+            this.version = version;
+            this.total = total;
+        }
+    }
+}
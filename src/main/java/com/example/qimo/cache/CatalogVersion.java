@@ -0,0 +1,38 @@
+package com.example.qimo.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 书籍目录的全局版本号。任何书籍的新增、修改、删除都会使版本号递增，
+ * 依赖目录内容的缓存（分页总数等）以版本号判断是否过期。
+ */
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastModified = System.currentTimeMillis();
+
+    /**
+     * @return 当前版本号
+     */
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * @return 最近一次变更的时间（毫秒时间戳）
+     */
+    public long lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * 目录发生变更后调用（应在事务提交后调用）
+     */
+    public void bump() {
+        lastModified = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.qimo.cache;
+
+import com.example.qimo.entity.Category;
+import com.example.qimo.repository.CategoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分类字典：整张 categories 表的内存快照（按名称排序的列表 + ID 索引）。
+ * 分类很少变更，首次访问时加载，分类增删改提交后由 {@link #invalidate()} 失效并在下次访问时重新加载。
+ * 快照中的 Category 对象是共享的只读对象，调用方不应修改。
+ */
+@Component
+public class CategoryDictionary {
+
+    /**
+     * 找不到分类时使用的兜底分类名称
+     */
+    public static final String FALLBACK_NAME = "其他";
+
+    private final CategoryRepository categoryRepository;
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private volatile long lastModified = System.currentTimeMillis();
+
+    @Autowired
+    public CategoryDictionary(CategoryRepository categoryRepository) {
+        this.categoryRepository = categoryRepository;
+    }
+
+    /**
+     * @return 按名称排序的全部分类（只读）
+     */
+    public List<Category> all() {
+        return snapshot().sorted;
+    }
+
+    /**
+     * 按ID查找分类
+     * @param id 分类ID，可为null
+     * @return 分类，不存在时返回null
+     */
+    public Category get(Long id) {
+        return id == null ? null : snapshot().byId.get(id);
+    }
+
+    /**
+     * 按名称查找分类
+     * @param name 分类名称（忽略首尾空白）
+     * @return 分类，不存在时返回null
+     */
+    public Category findByName(String name) {
+        return name == null ? null : snapshot().byName.get(name.trim());
+    }
+
+    /**
+     * @return 名为“其他”的兜底分类，不存在时返回null
+     */
+    public Category fallback() {
+        return snapshot().fallback;
+    }
+
+    /**
+     * @return 字典版本号，每次失效递增
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * @return 最近一次失效的时间（毫秒时间戳）
+     */
+    public long lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * 分类数据变更后调用（应在事务提交后调用）
+     */
+    public void invalidate() {
+        lastModified = System.currentTimeMillis();
+        version.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) return current;
+        synchronized (this) {
+            current = snapshot;
+            if (current != null) return current;
+            long loadedVersion = version.get();
+            current = new Snapshot(categoryRepository.findAllByOrderByNameAsc());
+            // 加载期间发生失效时不缓存本次结果，避免旧数据覆盖新版本
+            if (version.get() == loadedVersion) {
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    private static final class Snapshot {
+        final List<Category> sorted;
+        final Map<Long, Category> byId;
+        final Map<String, Category> byName;
+        final Category fallback;
+
+        Snapshot(List<Category> categories) {
+            this.sorted = Collections.unmodifiableList(categories);
+            Map<Long, Category> map = new HashMap<>(categories.size() * 2);
+            Map<String, Category> names = new HashMap<>(categories.size() * 2);
+            Category other = null;
+            for (Category c : categories) {
+                map.put(c.getId(), c);
+                names.put(c.getName(), c);
+                if (FALLBACK_NAME.equals(c.getName())) other = c;
+            }
+            this.byId = map;
+            this.byName = names;
+            this.fallback = other;
+        }
+    }
+}
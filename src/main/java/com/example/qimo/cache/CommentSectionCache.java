@@ -0,0 +1,130 @@
+package com.example.qimo.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 书籍详情页评论区的渲染结果缓存。
+ * 每本书维护一个评论版本号，评论的新增、删除、点赞都会使版本号变化；
+ * 缓存项按（书籍, 排序与页码）区分并记录渲染时的版本号，版本号不一致时重新渲染。缓存按 LRU 淘汰，只保留热门书籍的热门页。
+ */
+@Component
+public class CommentSectionCache {
+
+    // 最多缓存的评论区页数
+    private static final int MAX_ENTRIES = 512;
+
+    // 全局递增序列，保证同一本书的版本号只增不减
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Stamp> stamps = new ConcurrentHashMap<>();
+    private final long startedAt = System.currentTimeMillis();
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * @return 指定书籍评论区的当前版本号（启动后未变更过时为0）
+     */
+    public long version(Long bookId) {
+        Stamp stamp = stamps.get(bookId);
+        return stamp != null ? stamp.version : 0L;
+    }
+
+    /**
+     * @return 指定书籍评论区最近一次变更的时间（毫秒时间戳，启动后未变更过时为启动时间）
+     */
+    public long lastModified(Long bookId) {
+        Stamp stamp = stamps.get(bookId);
+        return stamp != null ? stamp.lastModified : startedAt;
+    }
+
+    /**
+     * 评论区发生变更后调用（应在事务提交后调用）
+     */
+    public void bump(Long bookId) {
+        if (bookId == null) return;
+        stamps.put(bookId, new Stamp(sequence.incrementAndGet(), System.currentTimeMillis()));
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.bookId.equals(bookId));
+        }
+    }
+
+    /**
+     * 获取评论区渲染结果，缓存缺失或已过期时调用 renderer 重新渲染
+     * @param bookId 书籍ID
+     * @param variant 同一本书下区分不同渲染结果的键（排序方式、页码等）
+     * @param renderer 实际的渲染逻辑
+     * @return 评论区 HTML
+     */
+    public String get(Long bookId, String variant, Supplier<String> renderer) {
+        // 先读取版本号再渲染：渲染期间若有写入，缓存项的版本号已过期，下次读取会重新渲染
+        long version = version(bookId);
+        Key key = new Key(bookId, variant);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version == version) {
+                return entry.html;
+            }
+        }
+        String html = renderer.get();
+        synchronized (entries) {
+            Entry existing = entries.get(key);
+            if (existing == null || existing.version < version) {
+                entries.put(key, new Entry(version, html));
+            }
+        }
+        return html;
+    }
+
+    private static final class Stamp {
+        final long version;
+        final long lastModified;
+
+        Stamp(long version, long lastModified) {
+            this.version = version;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class Key {
+        final Long bookId;
+        final String variant;
+
+        Key(Long bookId, String variant) {
+            this.bookId = bookId;
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return bookId.equals(other.bookId) && Objects.equals(variant, other.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * bookId.hashCode() + Objects.hashCode(variant);
+        }
+    }
+
+    private static final class Entry {
+        final long version;
+        final String html;
+
+        Entry(long version, String html) {
+            this.version = version;
+            this.html = html;
+        }
+    }
+}
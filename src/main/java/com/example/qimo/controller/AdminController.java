@@ -1,9 +1,16 @@
 package com.example.qimo.controller;
 
+import com.example.qimo.dto.BookCard;
+import com.example.qimo.dto.BookCursor;
+import com.example.qimo.dto.BookImportJob;
+import com.example.qimo.dto.CursorPage;
 import com.example.qimo.entity.Book;
+import com.example.qimo.service.BookExportService;
+import com.example.qimo.service.BookImportService;
 import com.example.qimo.service.BookService;
 import com.example.qimo.service.CategoryService;
 import com.example.qimo.service.UserService;
+import com.example.qimo.support.Isbn;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.net.URLEncoder;
@@ -16,8 +23,19 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.persistence.EntityNotFoundException;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
 
 @Controller
 @RequestMapping("/admin")
@@ -28,12 +46,17 @@ public class AdminController {
     private final BookService bookService;
     private final UserService userService;
     private final CategoryService categoryService;
+    private final BookImportService bookImportService;
+    private final BookExportService bookExportService;
 
     @Autowired
-    public AdminController(BookService bookService, UserService userService, CategoryService categoryService) {
+    public AdminController(BookService bookService, UserService userService, CategoryService categoryService,
+                           BookImportService bookImportService, BookExportService bookExportService) {
         this.bookService = bookService;
         this.userService = userService;
         this.categoryService = categoryService;
+        this.bookImportService = bookImportService;
+        this.bookExportService = bookExportService;
     }
 
     /**
@@ -80,25 +103,42 @@ public class AdminController {
     }
 
     /**
-     * 获取分页书籍列表
+     * 获取分页书籍列表（浅分页使用页码，深分页使用游标）
      */
     @GetMapping("/books")
     public String listBooks(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "6") int size,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String before,
             Model model) {
         try {
-            // 构造分页参数，按创建时间倒序排序
+            size = Math.max(1, Math.min(size, BookService.MAX_PAGE_SIZE));
+            model.addAttribute("size", size);
+            model.addAttribute("maxOffsetPages", BookService.MAX_OFFSET_PAGES);
+            if (after != null || before != null) {
+                CursorPage<BookCard> cursorPage = bookService.getBooksByCursor(null, after, before, size);
+                model.addAttribute("books", cursorPage);
+                model.addAttribute("cursorPage", cursorPage);
+                model.addAttribute("page", 0);
+                return "admin/books";
+            }
+
+            // 构造分页参数，按创建时间倒序排序；超出范围的页码收敛到最后一个允许的页
+            page = Math.max(0, Math.min(page, BookService.MAX_OFFSET_PAGES - 1));
             PageRequest pageRequest = PageRequest.of(page, size, 
-                    Sort.by("createdAt").descending());
+                    Sort.by("createdAt").descending().and(Sort.by("id").descending()));
             
             // 调用bookService.getBooks(Pageable)获取分页结果
-            Page<Book> books = bookService.getBooks(pageRequest);
+            Page<BookCard> books = bookService.getBooks(pageRequest);
             
             // 添加到model
             model.addAttribute("books", books);
             model.addAttribute("page", page);
-            model.addAttribute("size", size);
+            if (books.hasNext() && page + 1 >= BookService.MAX_OFFSET_PAGES && !books.getContent().isEmpty()) {
+                BookCard last = books.getContent().get(books.getContent().size() - 1);
+                model.addAttribute("deepNextCursor", BookCursor.of(last.getCreatedAt(), last.getId()));
+            }
         } catch (Exception e) {
             logger.error("获取书籍列表失败", e);
             model.addAttribute("error", "获取书籍列表失败: " + e.getMessage());
@@ -134,6 +174,14 @@ public class AdminController {
             if (book.getCoverImage() != null && book.getCoverImage().trim().isEmpty()) {
                 book.setCoverImage(null);
             }
+            String isbn = trimToNull(book.getIsbn());
+            if (isbn != null && Isbn.canonical(isbn) == null) {
+                return "redirect:/admin/books?error=" + urlEncode("ISBN 格式错误: " + isbn);
+            }
+            book.setIsbn(Isbn.canonical(isbn));
+            if (book.getIsbn() != null && bookService.existsByIsbn(book.getIsbn())) {
+                return "redirect:/admin/books?error=" + urlEncode("ISBN 已存在: " + book.getIsbn());
+            }
             
             // 移除手动设置createdAt，让JPA审计自动处理
             bookService.saveBook(book, book.getCategory() != null ? book.getCategory().getId() : null);
@@ -190,6 +238,15 @@ public class AdminController {
             // 更新字段
             existingBook.setTitle(bookForm.getTitle());
             existingBook.setAuthor(bookForm.getAuthor());
+            String isbn = trimToNull(bookForm.getIsbn());
+            if (isbn != null && Isbn.canonical(isbn) == null) {
+                return "redirect:/admin/books?page=" + page + "&size=" + size + "&error=" + urlEncode("ISBN 格式错误: " + isbn);
+            }
+            isbn = Isbn.canonical(isbn);
+            if (isbn != null && bookService.existsByIsbnAndIdNot(isbn, id)) {
+                return "redirect:/admin/books?page=" + page + "&size=" + size + "&error=" + urlEncode("ISBN 已存在: " + isbn);
+            }
+            existingBook.setIsbn(isbn);
             existingBook.setDescription(bookForm.getDescription());
             existingBook.setCategory(bookForm.getCategory());
             
@@ -236,6 +293,89 @@ public class AdminController {
         }
     }
 
+    /**
+     * 批量导入页面，带 jobId 时显示该任务的进度
+     */
+    @GetMapping("/books/import")
+    public String showImportForm(@RequestParam(required = false) String jobId, Model model) {
+        if (jobId != null) {
+            model.addAttribute("job", bookImportService.getJob(jobId));
+        }
+        return "admin/book-import";
+    }
+
+    /**
+     * 上传 CSV / JSON Lines 文件并开始后台导入
+     */
+    @PostMapping("/books/import")
+    public String importBooks(@RequestParam("file") MultipartFile file) {
+        try {
+            BookImportJob job = bookImportService.start(file);
+            return "redirect:/admin/books/import?jobId=" + urlEncode(job.getId());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            logger.warn("书籍导入未开始: {}", e.getMessage());
+            return "redirect:/admin/books/import?error=" + urlEncode(e.getMessage());
+        } catch (Exception e) {
+            logger.error("书籍导入失败", e);
+            return "redirect:/admin/books/import?error=" + urlEncode("导入失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询导入进度（JSON），供导入页面轮询
+     */
+    @GetMapping("/books/import/{jobId}")
+    @ResponseBody
+    public BookImportJob importProgress(@PathVariable String jobId) {
+        BookImportJob job = bookImportService.getJob(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "导入任务不存在");
+        }
+        return job;
+    }
+
+    /**
+     * 导出书籍目录（CSV / JSON Lines），结果边查询边写出，可选 gzip 压缩
+     * @param format csv 或 jsonl
+     * @param categoryId 分类ID，可选
+     * @param from 创建日期下限（含），格式 yyyy-MM-dd，可选
+     * @param to 创建日期上限（含），格式 yyyy-MM-dd，可选
+     * @param gzip 是否压缩
+     */
+    @GetMapping("/books/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        BookExportService.Format exportFormat;
+        try {
+            exportFormat = BookExportService.Format.of(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "开始日期不能晚于结束日期");
+        }
+
+        String fileName = "books-" + LocalDate.now() + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gz = new GZIPOutputStream(out, 64 * 1024);
+                bookExportService.export(exportFormat, categoryId, from, to, gz);
+                gz.finish();
+            } else {
+                bookExportService.export(exportFormat, categoryId, from, to, out);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .body(body);
+    }
+
     /**
      * 兼容性删除（POST）：有些环境中 HiddenHttpMethodFilter/DELETE 可能不可用，提供 POST 版本的删除接口
      */
@@ -247,6 +387,12 @@ public class AdminController {
         return deleteBook(id, page, size);
     }
 
+    private static String trimToNull(String s) {
+        if (s == null) return null;
+        String trimmed = s.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
     private String urlEncode(String s) {
         if (s == null) return "";
         return URLEncoder.encode(s, StandardCharsets.UTF_8);
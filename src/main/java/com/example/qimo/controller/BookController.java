@@ -1,11 +1,24 @@
 package com.example.qimo.controller;
 
+import com.example.qimo.cache.CatalogVersion;
+import com.example.qimo.cache.CategoryDictionary;
+import com.example.qimo.cache.CommentSectionCache;
+import com.example.qimo.dto.BookCard;
+import com.example.qimo.dto.BookFacetFilter;
+import com.example.qimo.dto.BookCursor;
+import com.example.qimo.dto.CursorPage;
+import com.example.qimo.dto.Suggestion;
 import com.example.qimo.entity.Book;
 import com.example.qimo.entity.Comment;
+import com.example.qimo.index.BookSuggestIndex;
 import com.example.qimo.service.BookService;
 import com.example.qimo.service.CategoryService;
+import com.example.qimo.service.CommentSectionService;
+import com.example.qimo.service.RatingService;
 import com.example.qimo.service.CommentService;
+import com.example.qimo.service.TrendingService;
 import com.example.qimo.service.UserService;
+import com.example.qimo.support.ConditionalGet;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,65 +31,232 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.RequestContextUtils;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import javax.servlet.http.HttpServletRequest;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Controller
 @RequestMapping("/books")
 public class BookController {
     private static final Logger logger = LoggerFactory.getLogger(BookController.class);
+    private static final Sort DEFAULT_SORT = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+    private static final int TRENDING_SIZE = 6;
 
     private final BookService bookService;
     private final CategoryService categoryService;
     private final CommentService commentService;
     private final UserService userService;
+    private final CommentSectionService commentSectionService;
+    private final CatalogVersion catalogVersion;
+    private final CategoryDictionary categoryDictionary;
+    private final CommentSectionCache commentSectionCache;
+    private final BookSuggestIndex bookSuggestIndex;
+    private final TrendingService trendingService;
+    private final RatingService ratingService;
 
     @Autowired
     public BookController(BookService bookService, CategoryService categoryService, 
-                         CommentService commentService, UserService userService) {
+                         CommentService commentService, UserService userService,
+                         CommentSectionService commentSectionService, CatalogVersion catalogVersion,
+                         CategoryDictionary categoryDictionary, CommentSectionCache commentSectionCache,
+                         BookSuggestIndex bookSuggestIndex,
+                         TrendingService trendingService, RatingService ratingService) {
         this.bookService = bookService;
         this.categoryService = categoryService;
         this.commentService = commentService;
         this.userService = userService;
+        this.commentSectionService = commentSectionService;
+        this.catalogVersion = catalogVersion;
+        this.categoryDictionary = categoryDictionary;
+        this.commentSectionCache = commentSectionCache;
+        this.bookSuggestIndex = bookSuggestIndex;
+        this.trendingService = trendingService;
+        this.ratingService = ratingService;
     }
 
     @GetMapping
     public String listBooks(
             @RequestParam(required = false) String query,
             @RequestParam(required = false) Long categoryId,
-            @PageableDefault(size = 6, sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable,
+            @RequestParam(name = "category", required = false) List<Long> categories,
+            @RequestParam(name = "decade", required = false) List<Integer> decades,
+            @RequestParam(name = "publisher", required = false) List<String> publishers,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String before,
+            @PageableDefault(size = 6, sort = {"createdAt", "id"}, direction = Sort.Direction.DESC) Pageable pageable,
+            Authentication authentication,
+            ServletWebRequest webRequest,
             Model model) {
 
+        boolean hasQuery = query != null && !query.trim().isEmpty();
+        // 热门排行只在无搜索的首页显示，其余页面的缓存不随排行刷新失效
+        boolean showTrending = !hasQuery && pageable.getPageNumber() == 0 && after == null && before == null;
+
+        // 条件 GET：目录、分类、（显示时的）热门排行与评分均未变化时直接返回 304，不查询、不渲染
+        HttpServletRequest request = webRequest.getRequest();
+        String etag = ConditionalGet.etag("books", catalogVersion.lastModified(), catalogVersion.current(),
+                categoryDictionary.version(), showTrending ? trendingService.version() : -1, ratingService.version(),
+                request.getQueryString(), ConditionalGet.viewerKey(request, authentication));
+        long lastModified = isAuthenticated(authentication) ? -1
+                : Math.max(Math.max(catalogVersion.lastModified(), categoryDictionary.lastModified()),
+                        Math.max(showTrending ? trendingService.lastModified() : 0, ratingService.lastModified()));
+        if (ConditionalGet.checkNotModified(webRequest, etag, lastModified)) {
+            return null;
+        }
+
+        // 多选筛选条件：兼容原有的单个 categoryId 参数
+        List<Long> categoryIds = new ArrayList<>();
+        if (categoryId != null) categoryIds.add(categoryId);
+        if (categories != null) categoryIds.addAll(categories);
+        BookFacetFilter filter = new BookFacetFilter(categoryIds, decades, publishers);
+        categoryId = filter.getSingleCategoryId();
+
         // 获取所有分类（用于下拉框）
         model.addAttribute("allCategories", categoryService.getAllCategories());
-        model.addAttribute("selectedCategoryId", categoryId);
+        model.addAttribute("selectedCategoryId", filter.isSingleCategoryOnly() ? categoryId : null);
+        model.addAttribute("selectedCategories", filter.getCategoryIds());
+        model.addAttribute("selectedDecades", filter.getDecades());
+        model.addAttribute("selectedPublishers", filter.getPublishers());
+        model.addAttribute("maxOffsetPages", BookService.MAX_OFFSET_PAGES);
+        // ?sort=rating：按平均评分排序，只用于全部书籍或单一分类（无搜索）；其余情况不显示该选项，也不标记为已选
+        boolean ratingSortAvailable = !hasQuery && filter.isSingleCategoryOnly();
+        boolean byRating = ratingSortAvailable && pageable.getSort().getOrderFor("rating") != null;
+        model.addAttribute("ratingSortAvailable", ratingSortAvailable);
+        model.addAttribute("sortByRating", byRating);
+        if (pageable.getSort().getOrderFor("rating") != null) {
+            // rating 不是实体属性：按评分排序只在下面的专用查询中处理，其余查询沿用默认排序
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), DEFAULT_SORT);
+        }
 
-        Page<Book> books;
-        if (query != null && !query.trim().isEmpty()) {
+        if (!hasQuery) {
+            // 各筛选取值的数量与列表在同一请求中返回
+            model.addAttribute("facets", bookService.getFacetCounts(filter));
+            // 热门书籍：单一分类时显示该分类的排行，否则显示全站排行
+            if (showTrending) {
+                model.addAttribute("trendingBooks",
+                        trendingService.getTrendingBooks(filter.isSingleCategoryOnly() ? categoryId : null, TRENDING_SIZE));
+            }
+        }
+        if (!hasQuery && filter.isSingleCategoryOnly() && (after != null || before != null) && !byRating) {
+            // 深分页：基于 (createdAt, id) 的游标翻页，不再使用 OFFSET
+            CursorPage<BookCard> cursorPage = bookService.getBooksByCursor(categoryId, after, before, pageable.getPageSize());
+            model.addAttribute("books", cursorPage);
+            model.addAttribute("cursorPage", cursorPage);
+            return "book/list";
+        }
+
+        // 浅分页继续使用页码，超出范围的页码收敛到最后一个允许的页
+        if (pageable.getPageNumber() >= BookService.MAX_OFFSET_PAGES) {
+            pageable = PageRequest.of(BookService.MAX_OFFSET_PAGES - 1, pageable.getPageSize(), pageable.getSort());
+        }
+
+        Page<BookCard> books;
+        if (hasQuery) {
             books = bookService.searchBooksByCategory(query.trim(), categoryId, pageable);
             model.addAttribute("query", query.trim());
+            // 只统计第一页的搜索，翻页不重复计数
+            if (pageable.getPageNumber() == 0) {
+                bookSuggestIndex.recordQuery(query);
+            }
+        } else if (byRating) {
+            books = bookService.getBooksByRating(categoryId, pageable);
         } else {
-            books = bookService.findBooksByCategory(categoryId, pageable);
+            books = bookService.findBooksByFacets(filter, pageable);
+            if (filter.isSingleCategoryOnly()) {
+                addDeepPageCursor(books, pageable, model);
+            }
         }
 
         model.addAttribute("books", books);
         return "book/list";
     }
 
+    /**
+     * 搜索框自动补全：按前缀返回书名/作者建议，完全由内存索引提供
+     */
+    @GetMapping("/suggest")
+    @ResponseBody
+    public List<Suggestion> suggest(@RequestParam("q") String prefix,
+                                    @RequestParam(defaultValue = "8") int limit) {
+        if (!bookSuggestIndex.isReady()) {
+            return Collections.emptyList();
+        }
+        return bookSuggestIndex.suggest(prefix, Math.min(limit, BookSuggestIndex.MAX_SUGGESTIONS));
+    }
+
+    /**
+     * 在最后一个页码页上提供“下一页”的游标，从这里开始切换到游标分页
+     */
+    private void addDeepPageCursor(Page<BookCard> books, Pageable pageable, Model model) {
+        boolean defaultSort = pageable.getSort().equals(DEFAULT_SORT);
+        if (defaultSort && books.hasNext() && pageable.getPageNumber() + 1 >= BookService.MAX_OFFSET_PAGES
+                && !books.getContent().isEmpty()) {
+            BookCard last = books.getContent().get(books.getContent().size() - 1);
+            model.addAttribute("deepNextCursor", BookCursor.of(last.getCreatedAt(), last.getId()));
+        }
+    }
+
     @GetMapping("/{id}")
-    public String showBook(@PathVariable Long id, Model model, Authentication authentication) {
+    public String showBook(@PathVariable Long id,
+                           @RequestParam(defaultValue = "newest") String csort,
+                           @RequestParam(defaultValue = "0") int cpage,
+                           Model model, Authentication authentication, ServletWebRequest webRequest) {
+        CommentService.ThreadSort commentSort = CommentService.ThreadSort.of(csort);
+        int commentPage = Math.max(cpage, 0);
+        // 条件 GET：书籍、评论区、分类及当前用户的收藏状态均未变化时直接返回 304
+        Optional<LocalDateTime> bookModified = bookService.getBookLastModified(id);
+        Boolean favorite = null;
+        Integer myRating = null;
+        if (bookModified.isPresent()) {
+            HttpServletRequest request = webRequest.getRequest();
+            long lastModified = Math.max(bookModified.get().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                    Math.max(commentSectionCache.lastModified(id), categoryDictionary.lastModified()));
+            if (isAuthenticated(authentication)) {
+                favorite = userService.existsFavoriteByUsernameAndBookId(authentication.getName(), id);
+                myRating = ratingService.getUserRating(id, authentication.getName()).orElse(0);
+            }
+            // 收藏数变化不更新书籍的修改时间，直接计入 ETag；评分汇总变化时会更新书籍的修改时间
+            String etag = ConditionalGet.etag("book", id, lastModified, commentSectionCache.version(id), commentSort, commentPage,
+                    bookService.getFavoriteCount(id), categoryDictionary.version(),
+                    favorite, myRating, ConditionalGet.viewerKey(request, authentication));
+            // 收藏状态没有修改时间，登录用户只使用 ETag；带有跳转提示时必须完整渲染
+            if (!hasFlashMessage(request) && ConditionalGet.checkNotModified(webRequest, etag, favorite != null ? -1 : lastModified)) {
+                return null;
+            }
+        }
+        Boolean isFavorite = favorite;
+        Integer userRating = myRating;
+
         return bookService.getBookById(id)
                 .map(book -> {
+                    // 只统计完整渲染的浏览，304 和去重窗口内的重复浏览不计入热度
+                    trendingService.recordView(id, isAuthenticated(authentication)
+                            ? "u:" + authentication.getName() : "ip:" + webRequest.getRequest().getRemoteAddr());
                     model.addAttribute("book", book);
                     
-                    // 加载评论，这里应该使用CommentService获取评论
-                    model.addAttribute("comments", commentService.getCommentsWithRepliesByBookId(id));
+                    // 评论区按页渲染，使用按书籍缓存的共享片段，评论变更时才重新渲染
+                    model.addAttribute("commentSectionHtml", commentSectionService.render(id, commentSort, commentPage));
                     
                     // 检查当前用户是否已登录
                     if (authentication != null && authentication.isAuthenticated()) {
                         String username = authentication.getName();
-                        model.addAttribute("isFavorite", userService.existsFavoriteByUsernameAndBookId(username, id));
+                        model.addAttribute("isFavorite", isFavorite != null ? isFavorite
+                                : userService.existsFavoriteByUsernameAndBookId(username, id));
                         model.addAttribute("username", username);
+                        model.addAttribute("isAdmin", authentication.getAuthorities().stream()
+                                .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority())));
+                        // 当前用户的点赞状态不进入共享片段，由页面脚本标记
+                        model.addAttribute("likedCommentIds", commentService.getLikedCommentIds(id, username));
+                        model.addAttribute("myRating", userRating != null ? userRating
+                                : ratingService.getUserRating(id, username).orElse(0));
                     }
                     
                     return "book/detail";
@@ -84,6 +264,15 @@ public class BookController {
                 .orElse("redirect:/books");
     }
 
+    private static boolean hasFlashMessage(HttpServletRequest request) {
+        Map<String, ?> flash = RequestContextUtils.getInputFlashMap(request);
+        return flash != null && !flash.isEmpty();
+    }
+
+    private static boolean isAuthenticated(Authentication authentication) {
+        return authentication != null && authentication.isAuthenticated();
+    }
+
     @GetMapping("/add")
     public String showAddBookForm(Model model) {
         model.addAttribute("book", new Book());
@@ -145,10 +334,16 @@ public class BookController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "6") int size,
             Model model) {
+        // 页码与每页数量都收敛到允许的范围，避免无上限的 OFFSET
+        page = Math.max(0, Math.min(page, BookService.MAX_OFFSET_PAGES - 1));
+        size = Math.max(1, Math.min(size, BookService.MAX_PAGE_SIZE));
         Pageable pageable = PageRequest.of(page, size, Sort.by("id").descending());
         model.addAttribute("books", bookService.getBooksByCategoryId(categoryId, pageable));
         model.addAttribute("selectedCategoryId", categoryId);
         model.addAttribute("allCategories", categoryService.getAllCategories());
+        model.addAttribute("maxOffsetPages", BookService.MAX_OFFSET_PAGES);
+        model.addAttribute("sortByRating", false);
+        model.addAttribute("ratingSortAvailable", true);
         return "book/list";
     }
 }
\ No newline at end of file
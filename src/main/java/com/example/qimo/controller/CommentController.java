@@ -1,11 +1,18 @@
 package com.example.qimo.controller;
 
+import com.example.qimo.dto.LikeState;
+import com.example.qimo.service.CommentEventHub;
+import com.example.qimo.service.CommentSectionService;
 import com.example.qimo.service.CommentService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.persistence.EntityNotFoundException;
@@ -14,10 +21,82 @@ import javax.persistence.EntityNotFoundException;
 public class CommentController {
     
     private final CommentService commentService;
+    private final CommentSectionService commentSectionService;
+    private final CommentEventHub commentEventHub;
     
     @Autowired
-    public CommentController(CommentService commentService) {
+    public CommentController(CommentService commentService, CommentSectionService commentSectionService,
+                             CommentEventHub commentEventHub) {
         this.commentService = commentService;
+        this.commentSectionService = commentSectionService;
+        this.commentEventHub = commentEventHub;
+    }
+
+    /**
+     * 评论区实时事件流（新评论、删除、点赞数变化），由详情页的 EventSource 订阅
+     */
+    @GetMapping(value = "/books/{bookId}/comments/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter commentEvents(@PathVariable Long bookId) {
+        try {
+            return commentEventHub.subscribe(bookId);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * 评论区分页片段（主评论翻页、切换排序时由详情页脚本加载）
+     */
+    @GetMapping(value = "/books/{bookId}/comments/threads", produces = MediaType.TEXT_HTML_VALUE)
+    @ResponseBody
+    public String commentThreads(
+            @PathVariable Long bookId,
+            @RequestParam(defaultValue = "newest") String sort,
+            @RequestParam(defaultValue = "0") int page) {
+        return commentSectionService.render(bookId, CommentService.ThreadSort.of(sort), page);
+    }
+
+    /**
+     * “查看更多回复”片段：按游标加载某个评论串的后续回复
+     */
+    @GetMapping(value = "/books/{bookId}/comments/{commentId}/replies", produces = MediaType.TEXT_HTML_VALUE)
+    @ResponseBody
+    public String commentReplies(
+            @PathVariable Long bookId,
+            @PathVariable Long commentId,
+            @RequestParam(required = false) String after) {
+        try {
+            return commentSectionService.renderReplies(bookId, commentId, after);
+        } catch (EntityNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+    
+    /**
+     * 点赞（幂等），供详情页脚本调用
+     */
+    @PutMapping(value = "/comments/{commentId}/like", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public LikeState like(@PathVariable Long commentId, Authentication authentication) {
+        try {
+            return commentService.like(commentId, authentication.getName());
+        } catch (EntityNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    /**
+     * 取消点赞（幂等），供详情页脚本调用
+     */
+    @DeleteMapping(value = "/comments/{commentId}/like", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public LikeState unlike(@PathVariable Long commentId, Authentication authentication) {
+        try {
+            return commentService.unlike(commentId, authentication.getName());
+        } catch (EntityNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
     }
     
     @PostMapping("/comments/{commentId}/like")
@@ -106,11 +185,13 @@ public class CommentController {
             }
 
             String username = authentication.getName();
-            commentService.addComment(bookId, content, username, null);
+            if (commentService.addComment(bookId, content, username, null) == CommentService.AddResult.PENDING) {
+                redirectAttributes.addFlashAttribute("info", "评论已提交，正在处理中，请稍后刷新查看");
+            }
 
             String target = redirectUrl != null ? redirectUrl : (referer != null ? referer : "/books");
             return "redirect:" + target;
-        } catch (IllegalArgumentException | EntityNotFoundException e) {
+        } catch (IllegalArgumentException | IllegalStateException | EntityNotFoundException e) {
             redirectAttributes.addFlashAttribute("error", e.getMessage());
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "发表评论失败，请重试");
@@ -137,11 +218,13 @@ public class CommentController {
             }
 
             String username = authentication.getName();
-            commentService.addComment(bookId, content, username, parentId);
+            if (commentService.addComment(bookId, content, username, parentId) == CommentService.AddResult.PENDING) {
+                redirectAttributes.addFlashAttribute("info", "评论已提交，正在处理中，请稍后刷新查看");
+            }
 
             String target = redirectUrl != null ? redirectUrl : (referer != null ? referer : "/books");
             return "redirect:" + target;
-        } catch (IllegalArgumentException | EntityNotFoundException e) {
+        } catch (IllegalArgumentException | IllegalStateException | EntityNotFoundException e) {
             redirectAttributes.addFlashAttribute("error", e.getMessage());
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "回复评论失败，请重试");
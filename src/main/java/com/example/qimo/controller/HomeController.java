@@ -0,0 +1,28 @@
+package com.example.qimo.controller;
+
+import com.example.qimo.service.TrendingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+
+@Controller
+public class HomeController {
+    private static final int TRENDING_SIZE = 8;
+
+    private final TrendingService trendingService;
+
+    @Autowired
+    public HomeController(TrendingService trendingService) {
+        this.trendingService = trendingService;
+    }
+
+    /**
+     * 首页：展示全站热门书籍
+     */
+    @GetMapping("/")
+    public String index(Model model) {
+        model.addAttribute("trendingBooks", trendingService.getTrendingBooks(null, TRENDING_SIZE));
+        return "index";
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.qimo.controller;
+
+import com.example.qimo.service.RatingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import javax.persistence.EntityNotFoundException;
+
+@Controller
+public class RatingController {
+
+    private final RatingService ratingService;
+
+    @Autowired
+    public RatingController(RatingService ratingService) {
+        this.ratingService = ratingService;
+    }
+
+    // 评分或修改评分
+    @PostMapping("/books/{id}/rating")
+    public String rate(@PathVariable Long id,
+                       @RequestParam("score") int score,
+                       Authentication authentication,
+                       RedirectAttributes redirectAttributes) {
+        try {
+            ratingService.rate(id, authentication.getName(), score);
+            redirectAttributes.addFlashAttribute("success", "评分已保存");
+        } catch (IllegalArgumentException | EntityNotFoundException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("error", "评分失败，请重试");
+        }
+        return "redirect:/books/" + id;
+    }
+
+    // 删除评分（由HiddenHttpMethodFilter转换的DELETE请求）
+    @DeleteMapping("/books/{id}/rating")
+    public String removeRating(@PathVariable Long id,
+                               Authentication authentication,
+                               RedirectAttributes redirectAttributes) {
+        try {
+            ratingService.removeRating(id, authentication.getName());
+            redirectAttributes.addFlashAttribute("success", "评分已删除");
+        } catch (IllegalArgumentException | EntityNotFoundException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("error", "删除评分失败，请重试");
+        }
+        return "redirect:/books/" + id;
+    }
+}
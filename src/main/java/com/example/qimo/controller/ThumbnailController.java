@@ -0,0 +1,89 @@
+package com.example.qimo.controller;
+
+import com.example.qimo.service.ImageThumbnailService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 缩略图访问。缩略图生成后不会原地修改，页面引用时带版本参数，因此可以长期缓存。
+ * 支持 Tomcat sendfile 时由容器直接零拷贝发送，否则使用 {@link FileChannel#transferTo} 写出。
+ */
+@Controller
+public class ThumbnailController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ImageThumbnailService imageThumbnailService;
+
+    @Autowired
+    public ThumbnailController(ImageThumbnailService imageThumbnailService) {
+        this.imageThumbnailService = imageThumbnailService;
+    }
+
+    @GetMapping("/thumbs/{name:.+}")
+    public void thumbnail(@PathVariable String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = imageThumbnailService.resolve(name);
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+
+        // 缩略图以临时文件原子替换，(文件名, 修改时间, 大小) 唯一确定内容，可作为强 ETag
+        String etag = "\"" + name.substring(0, name.length() - 4) + "-" + Long.toString(modified, 36)
+                + "-" + Long.toString(size, 36) + "\"";
+        response.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+        if (new ServletWebRequest(request, response).checkNotModified(etag, modified)) {
+            return;
+        }
+
+        response.setContentType("image/jpeg");
+        response.setContentLengthLong(size);
+        if ("HEAD".equals(request.getMethod())) return;
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = 0;
+            while (position < size) {
+                long sent = channel.transferTo(position, size - position, target);
+                if (sent <= 0) break;
+                position += sent;
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.qimo.dto;
+
+import com.example.qimo.entity.Book;
+
+import java.time.LocalDateTime;
+
+/**
+ * 书籍列表卡片的只读投影：只包含列表页需要渲染的字段，
+ * 简介使用预先计算好的摘要列，不加载完整的 description。
+ */
+public class BookCard {
+
+    private final Long id;
+    private final String title;
+    private final String author;
+    private final String coverImage;
+    private final String descriptionExcerpt;
+    private final LocalDateTime createdAt;
+    private final Double averageRating;
+    private final int ratingCount;
+
+    public BookCard(Long id, String title, String author, String coverImage, String descriptionExcerpt, LocalDateTime createdAt) {
+        this(id, title, author, coverImage, descriptionExcerpt, createdAt, null, 0);
+    }
+
+    public BookCard(Long id, String title, String author, String coverImage, String descriptionExcerpt, LocalDateTime createdAt,
+                    Double averageRating, int ratingCount) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.coverImage = coverImage;
+        this.descriptionExcerpt = descriptionExcerpt;
+        this.createdAt = createdAt;
+        this.averageRating = averageRating;
+        this.ratingCount = ratingCount;
+    }
+
+    /**
+     * 由完整实体构造卡片（用于降级查询等已加载实体的场景）
+     */
+    public static BookCard of(Book book) {
+        String excerpt = book.getDescriptionExcerpt() != null ? book.getDescriptionExcerpt() : Book.excerptOf(book.getDescription());
+        return new BookCard(book.getId(), book.getTitle(), book.getAuthor(), book.getCoverImage(), excerpt, book.getCreatedAt(),
+                book.getAverageRating(), book.getRatingCount());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getCoverImage() {
+        return coverImage;
+    }
+
+    public String getDescriptionExcerpt() {
+        return descriptionExcerpt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * @return 平均评分，暂无评分时为null
+     */
+    public Double getAverageRating() {
+        return averageRating;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.qimo.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 书籍列表的游标（created_at, id），对外以不透明的 URL 安全字符串传递。
+ */
+public final class BookCursor {
+
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    public BookCursor(LocalDateTime createdAt, Long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * 编码为不透明字符串
+     */
+    public String encode() {
+        String raw = createdAt + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标字符串
+     * @param token 游标字符串，可为null
+     * @return 解析结果；为空或格式错误时返回null
+     */
+    public static BookCursor decode(String token) {
+        if (token == null || token.isEmpty()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int comma = raw.lastIndexOf(',');
+            if (comma <= 0) return null;
+            return new BookCursor(LocalDateTime.parse(raw.substring(0, comma)), Long.valueOf(raw.substring(comma + 1)));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 生成某一行的游标字符串
+     */
+    public static String of(LocalDateTime createdAt, Long id) {
+        if (createdAt == null || id == null) return null;
+        return new BookCursor(createdAt, id).encode();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.qimo.dto;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 书籍列表的多选筛选条件：同一维度内为“或”，不同维度之间为“与”。
+ * 空集合表示该维度不筛选。
+ */
+public class BookFacetFilter {
+
+    private final Set<Long> categoryIds;
+    private final Set<Integer> decades;
+    private final Set<String> publishers;
+
+    public BookFacetFilter(Collection<Long> categoryIds, Collection<Integer> decades, Collection<String> publishers) {
+        this.categoryIds = copy(categoryIds);
+        this.decades = copy(decades);
+        Set<String> trimmed = new LinkedHashSet<>();
+        if (publishers != null) {
+            for (String p : publishers) {
+                if (p != null && !p.trim().isEmpty()) trimmed.add(p.trim());
+            }
+        }
+        this.publishers = Collections.unmodifiableSet(trimmed);
+    }
+
+    private static <T> Set<T> copy(Collection<T> values) {
+        Set<T> set = new LinkedHashSet<>();
+        if (values != null) {
+            for (T v : values) {
+                if (v != null) set.add(v);
+            }
+        }
+        return Collections.unmodifiableSet(set);
+    }
+
+    public Set<Long> getCategoryIds() {
+        return categoryIds;
+    }
+
+    /**
+     * @return 出版年代（年代起始年份，如 1990 表示 1990-1999）
+     */
+    public Set<Integer> getDecades() {
+        return decades;
+    }
+
+    public Set<String> getPublishers() {
+        return publishers;
+    }
+
+    public boolean isEmpty() {
+        return categoryIds.isEmpty() && decades.isEmpty() && publishers.isEmpty();
+    }
+
+    /**
+     * @return 是否最多只按一个分类筛选（可以使用原有的按分类分页/游标分页）
+     */
+    public boolean isSingleCategoryOnly() {
+        return categoryIds.size() <= 1 && decades.isEmpty() && publishers.isEmpty();
+    }
+
+    /**
+     * @return 唯一选中的分类ID，没有或有多个时返回null
+     */
+    public Long getSingleCategoryId() {
+        return categoryIds.size() == 1 ? categoryIds.iterator().next() : null;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.qimo.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次批量导入任务的进度（计数器由导入线程更新，页面轮询读取）
+ */
+public class BookImportJob {
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    // 最多保留的错误明细条数
+    private static final int MAX_ERRORS = 50;
+
+    private final String id;
+    private final String fileName;
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final List<String> errors = new ArrayList<>();
+    private volatile Status status = Status.RUNNING;
+    private volatile String message;
+    private volatile long finishedAt;
+
+    public BookImportJob(String id, String fileName) {
+        this.id = id;
+        this.fileName = fileName;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getInserted() {
+        return inserted.get();
+    }
+
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    public long getInvalid() {
+        return invalid.get();
+    }
+
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return Collections.unmodifiableList(new ArrayList<>(errors));
+        }
+    }
+
+    public boolean isFinished() {
+        return status != Status.RUNNING;
+    }
+
+    public void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    public void addInserted(long count) {
+        inserted.addAndGet(count);
+    }
+
+    public void addDuplicates(long count) {
+        duplicates.addAndGet(count);
+    }
+
+    /**
+     * 记录一条无效数据
+     * @param line 行号（从1开始，含表头）
+     * @param reason 原因
+     */
+    public void rowInvalid(long line, String reason) {
+        invalid.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS) errors.add("第 " + line + " 行：" + reason);
+        }
+    }
+
+    public void complete() {
+        finishedAt = System.currentTimeMillis();
+        status = Status.COMPLETED;
+    }
+
+    public void fail(String message) {
+        this.message = message;
+        finishedAt = System.currentTimeMillis();
+        status = Status.FAILED;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.qimo.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 评论树节点的只读投影：只包含评论区渲染需要的字段，不加载点赞用户集合等关联实体。
+ * replies 由 CommentService 在内存中组装。
+ */
+public class CommentNode {
+
+    private final Long id;
+    private final Long parentId;
+    private final String path;
+    private final int depth;
+    private final String content;
+    private final LocalDateTime createdAt;
+    private final String username;
+    private final long likeCount;
+    private final long replyCount;
+    private final List<CommentNode> replies = new ArrayList<>();
+    // 分页加载时：该评论串是否还有未加载的回复
+    private boolean moreReplies;
+
+    public CommentNode(Long id, Long parentId, String path, Integer depth, String content, LocalDateTime createdAt,
+                       String username, Number likeCount, Number replyCount) {
+        this.id = id;
+        this.parentId = parentId;
+        this.path = path;
+        this.depth = depth != null ? depth : 0;
+        this.content = content;
+        this.createdAt = createdAt;
+        this.username = username;
+        this.likeCount = likeCount != null ? likeCount.longValue() : 0;
+        this.replyCount = replyCount != null ? replyCount.longValue() : 0;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getParentId() {
+        return parentId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getLikeCount() {
+        return likeCount;
+    }
+
+    /**
+     * @return 直接回复数（冗余计数）
+     */
+    public long getReplyCount() {
+        return replyCount;
+    }
+
+    public List<CommentNode> getReplies() {
+        return replies;
+    }
+
+    public boolean isMoreReplies() {
+        return moreReplies;
+    }
+
+    public void setMoreReplies(boolean moreReplies) {
+        this.moreReplies = moreReplies;
+    }
+
+    /**
+     * @return 继续加载回复时使用的游标（已加载的最后一条回复的路径，没有回复时为自身路径）
+     */
+    public String getReplyCursor() {
+        return replies.isEmpty() ? path : replies.get(replies.size() - 1).getPath();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.qimo.dto;
+
+/**
+ * 评论的定位信息（所属书籍、物化路径、深度），用于校验回复而不装载评论实体
+ */
+public class CommentRef {
+
+    private final Long id;
+    private final Long bookId;
+    private final String path;
+    private final Integer depth;
+
+    public CommentRef(Long id, Long bookId, String path, Integer depth) {
+        this.id = id;
+        this.bookId = bookId;
+        this.path = path;
+        this.depth = depth;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    /**
+     * @return 物化路径，尚未补齐时为null
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public Integer getDepth() {
+        return depth;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.qimo.dto;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 基于游标（keyset）的分页结果，不包含总数，前后翻页通过不透明游标完成。
+ * @param <T> 元素类型
+ */
+public class CursorPage<T> implements Iterable<T> {
+
+    private final List<T> content;
+    private final int size;
+    private final String nextCursor;
+    private final String prevCursor;
+
+    public CursorPage(List<T> content, int size, String nextCursor, String prevCursor) {
+        this.content = content != null ? content : Collections.emptyList();
+        this.size = size;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return content.isEmpty();
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return prevCursor != null;
+    }
+
+    /**
+     * @return 下一页（更早的书籍）的游标，没有下一页时为null
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return 上一页（更新的书籍）的游标，没有上一页时为null
+     */
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return content.iterator();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.qimo.dto;
+
+import java.util.List;
+
+/**
+ * 书籍列表各筛选维度的计数。
+ * 每个维度的计数应用了其它维度的筛选条件但不含本维度自身（多选时仍能看到同维度其它取值的数量）。
+ */
+public class FacetCounts {
+
+    private final List<FacetValue> categories;
+    private final List<FacetValue> decades;
+    private final List<FacetValue> publishers;
+
+    public FacetCounts(List<FacetValue> categories, List<FacetValue> decades, List<FacetValue> publishers) {
+        this.categories = categories;
+        this.decades = decades;
+        this.publishers = publishers;
+    }
+
+    public List<FacetValue> getCategories() {
+        return categories;
+    }
+
+    public List<FacetValue> getDecades() {
+        return decades;
+    }
+
+    public List<FacetValue> getPublishers() {
+        return publishers;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.qimo.dto;
+
+/**
+ * 筛选维度中的一个取值及其命中数量
+ */
+public class FacetValue {
+
+    private final String key;
+    private final String label;
+    private final long count;
+    private final boolean selected;
+
+    public FacetValue(String key, String label, long count, boolean selected) {
+        this.key = key;
+        this.label = label;
+        this.count = count;
+        this.selected = selected;
+    }
+
+    /**
+     * @return 提交筛选时使用的参数值
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isSelected() {
+        return selected;
+    }
+}
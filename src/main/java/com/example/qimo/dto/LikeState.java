@@ -0,0 +1,35 @@
+package com.example.qimo.dto;
+
+/**
+ * 点赞/取消点赞后的评论状态
+ */
+public class LikeState {
+
+    private final Long commentId;
+    private final boolean liked;
+    private final long likeCount;
+
+    public LikeState(Long commentId, boolean liked, long likeCount) {
+        this.commentId = commentId;
+        this.liked = liked;
+        this.likeCount = likeCount;
+    }
+
+    public Long getCommentId() {
+        return commentId;
+    }
+
+    /**
+     * @return 当前用户是否已点赞
+     */
+    public boolean isLiked() {
+        return liked;
+    }
+
+    /**
+     * @return 评论的点赞数（写回模式下不含尚未写入数据库的操作）
+     */
+    public long getLikeCount() {
+        return likeCount;
+    }
+}
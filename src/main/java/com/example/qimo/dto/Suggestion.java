@@ -0,0 +1,29 @@
+package com.example.qimo.dto;
+
+/**
+ * 搜索框自动补全的一条建议
+ */
+public class Suggestion {
+
+    public static final String TYPE_TITLE = "title";
+    public static final String TYPE_AUTHOR = "author";
+
+    private final String text;
+    private final String type;
+
+    public Suggestion(String text, String type) {
+        this.text = text;
+        this.type = type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return 建议来源：title（书名）或 author（作者）
+     */
+    public String getType() {
+        return type;
+    }
+}
@@ -7,7 +7,16 @@ import java.util.List;
 import java.util.Set;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+    // 游标分页按 (created_at, id) 定位，避免深分页的 OFFSET 扫描
+    @Index(name = "idx_books_created_at_id", columnList = "created_at, id"),
+    @Index(name = "idx_books_category_created_at_id", columnList = "category_id, created_at, id"),
+    // ISBN 以规范写法（13 位数字）保存，同一 ISBN 只能对应一本书
+    @Index(name = "uk_books_isbn", columnList = "isbn", unique = true),
+    // 按平均评分排序（全部 / 单个分类）
+    @Index(name = "idx_books_rating", columnList = "average_rating, rating_count, id"),
+    @Index(name = "idx_books_category_rating", columnList = "category_id, average_rating, rating_count, id")
+})
 public class Book {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -18,6 +27,11 @@ public class Book {
     private String isbn;
     private String publisher;
     private String description;
+
+    // 列表页使用的简介摘要，保存时由 description 计算得出
+    @Column(name = "description_excerpt", length = 200)
+    private String descriptionExcerpt;
+
     private String coverImage;
     private Integer year;
     
@@ -27,9 +41,11 @@ public class Book {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
-    // 修改为可选关联，允许category为null
-    @ManyToOne(fetch = FetchType.EAGER, optional = true)
-    @JoinColumn(name = "category_id", nullable = true)
+    // 只持久化分类ID，分类对象由 CategoryDictionary 在读取时解析，避免每次查询都关联 categories 表
+    @Column(name = "category_id", nullable = true)
+    private Long categoryId;
+
+    @Transient
     private Category category;
     
     @OneToMany(mappedBy = "book", cascade = CascadeType.REMOVE)
@@ -39,24 +55,85 @@ public class Book {
     @ManyToMany(mappedBy = "favoriteBooks")
     private Set<User> favoritedBy = new HashSet<>();
 
+    // 冗余计数：只通过 BookRepository 中的原子增减语句维护（实体保存时不写入），由定时校对任务修正偏差
+    @Column(name = "comment_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int commentCount;
+
+    @Column(name = "favorite_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int favoriteCount;
+
+    // 评分汇总：只通过 BookRepository.applyRatingChange 随每条评分的变化增量维护（实体保存时不写入），
+    // 平均分也存为列，列表页显示和按评分排序都不需要扫描 ratings 表
+    @Column(name = "rating_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int ratingCount;
+
+    @Column(name = "rating_sum", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int ratingSum;
+
+    // 各分值（1-5分）的评分人数
+    @Column(name = "rating_1", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int rating1;
+
+    @Column(name = "rating_2", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int rating2;
+
+    @Column(name = "rating_3", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int rating3;
+
+    @Column(name = "rating_4", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int rating4;
+
+    @Column(name = "rating_5", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int rating5;
+
+    // 没有评分时为 NULL
+    @Column(name = "average_rating", insertable = false, updatable = false, columnDefinition = "DOUBLE NULL")
+    private Double averageRating;
+
     /**
-     * 占位方法：模板中会读取 `averageRating`，但当前项目尚未实现评分系统。
-     * 为避免模板在不存在该属性时报错（Thymeleaf 在解析时会尝试读取属性），
-     * 提供一个空实现，返回 null 表示暂无评分。
+     * @return 平均评分，暂无评分时为null
      */
     public Double getAverageRating() {
-        return null;
+        return averageRating;
+    }
+
+    /**
+     * 列表摘要的最大字符数
+     */
+    public static final int EXCERPT_LENGTH = 120;
+
+    /**
+     * 计算简介摘要：合并空白字符，超过 {@link #EXCERPT_LENGTH} 个字符时截断并追加省略号
+     * @param description 完整简介，可为null
+     * @return 摘要，description为null时返回null
+     */
+    public static String excerptOf(String description) {
+        if (description == null) return null;
+        String text = description.trim().replaceAll("\\s+", " ");
+        if (text.codePointCount(0, text.length()) <= EXCERPT_LENGTH) return text;
+        return text.substring(0, text.offsetByCodePoints(0, EXCERPT_LENGTH)) + "…";
     }
 
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        descriptionExcerpt = excerptOf(description);
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        descriptionExcerpt = excerptOf(description);
     }
     
     // getter和setter方法
@@ -108,6 +185,14 @@ public class Book {
         this.description = description;
     }
     
+    public String getDescriptionExcerpt() {
+        return descriptionExcerpt;
+    }
+
+    public void setDescriptionExcerpt(String descriptionExcerpt) {
+        this.descriptionExcerpt = descriptionExcerpt;
+    }
+    
     public String getCoverImage() {
         return coverImage;
     }
@@ -149,12 +234,47 @@ public class Book {
         this.updatedAt = updatedAt;
     }
     
-    // Category getter和setter
+    // Category getter和setter（设置分类时同步更新 categoryId）
     public Category getCategory() {
         return category;
     }
     
     public void setCategory(Category category) {
         this.category = category;
+        this.categoryId = category != null ? category.getId() : null;
+    }
+
+    public Long getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(Long categoryId) {
+        this.categoryId = categoryId;
+        if (category != null && !java.util.Objects.equals(category.getId(), categoryId)) {
+            this.category = null;
+        }
+    }
+
+    public int getCommentCount() {
+        return commentCount;
+    }
+
+    public int getFavoriteCount() {
+        return favoriteCount;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+
+    public int getRatingSum() {
+        return ratingSum;
+    }
+
+    /**
+     * @return 各分值的评分人数，下标 0 对应 1 分
+     */
+    public int[] getRatingDistribution() {
+        return new int[]{rating1, rating2, rating3, rating4, rating5};
     }
-}
\ No newline at end of file
+}
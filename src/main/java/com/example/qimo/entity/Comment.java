@@ -1,5 +1,6 @@
 package com.example.qimo.entity;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -18,9 +19,25 @@ import java.util.Set;
 @Setter
 @ToString(exclude = {"likedBy", "book", "user", "parent", "replies"})
 @Entity
-@Table(name = "comments", schema = "book_db", catalog = "book_db")
+@Table(name = "comments", schema = "book_db", catalog = "book_db", indexes = {
+    // 按物化路径顺序一次取出整本书的评论树
+    @Index(name = "idx_comments_book_path", columnList = "book_id, path"),
+    // 主评论分页（parent_id IS NULL）按时间排序
+    @Index(name = "idx_comments_book_parent_created", columnList = "book_id, parent_id, created_at"),
+    // 主评论按点赞数排序
+    @Index(name = "idx_comments_book_parent_likes", columnList = "book_id, parent_id, like_count"),
+    // 读取时排除墓碑子树、后台清理查找墓碑
+    @Index(name = "idx_comments_deleted_book", columnList = "deleted, book_id")
+})
 @EntityListeners(AuditingEntityListener.class)
 public class Comment {
+
+    // 路径中每段的长度：8 位36进制可表示约 2.8 万亿个ID
+    public static final int PATH_SEGMENT_LENGTH = 8;
+    // 路径列长度（ascii），同时决定最大层级
+    public static final int PATH_MAX_LENGTH = 760;
+    public static final int MAX_DEPTH = PATH_MAX_LENGTH / PATH_SEGMENT_LENGTH - 1;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -44,6 +61,31 @@ public class Comment {
     @JoinColumn(name = "parent_id")
     private Comment parent;
     
+    // 物化路径：从根评论到当前评论的ID序列，每段为定长的36进制ID，按字典序排序即为树的先序遍历顺序
+    @Column(name = "path", length = PATH_MAX_LENGTH, columnDefinition = "VARCHAR(" + PATH_MAX_LENGTH + ") CHARACTER SET ascii")
+    private String path;
+
+    // 层级深度，根评论为0
+    @Column(name = "depth")
+    private Integer depth;
+
+    // 冗余计数：点赞数与直接回复数，只通过 CommentRepository 中的原子增减语句维护（实体保存时不写入）
+    @Column(name = "like_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    @Setter(AccessLevel.NONE)
+    private int likeCount;
+
+    @Column(name = "reply_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    @Setter(AccessLevel.NONE)
+    private int replyCount;
+
+    // 墓碑标记：删除时只设置该标记，读者立即不可见，子树及点赞记录由后台任务分批清理
+    @Column(name = "deleted", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "BOOLEAN NOT NULL DEFAULT FALSE")
+    @Setter(AccessLevel.NONE)
+    private boolean deleted;
+
     @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Comment> replies = new ArrayList<>();
     
@@ -55,22 +97,39 @@ public class Comment {
     )
     private Set<User> likedBy = new HashSet<>();
     
-    // 辅助方法，判断当前用户是否已点赞
-    public boolean isLikedBy(User user) {
-        return likedBy.contains(user);
+    /**
+     * 生成物化路径中的一段（定长、左补0的36进制ID，字典序与数值顺序一致）
+     */
+    public static String pathSegment(long id) {
+        String s = Long.toString(id, 36);
+        if (s.length() >= PATH_SEGMENT_LENGTH) return s;
+        StringBuilder sb = new StringBuilder(PATH_SEGMENT_LENGTH);
+        for (int i = s.length(); i < PATH_SEGMENT_LENGTH; i++) sb.append('0');
+        return sb.append(s).toString();
     }
 
-    // 辅助方法，判断用户名对应的用户是否已点赞（用于模板中通过用户名判断）
-    public boolean isLikedByUsername(String username) {
-        if (username == null) return false;
-        return likedBy.stream().anyMatch(u -> username.equals(u.getUsername()));
+    /**
+     * 列出物化路径上全部祖先评论的路径（从根评论开始，不含自身）
+     */
+    public static List<String> ancestorPaths(String path) {
+        List<String> ancestors = new ArrayList<>();
+        for (int end = PATH_SEGMENT_LENGTH; end < path.length(); end += PATH_SEGMENT_LENGTH) {
+            ancestors.add(path.substring(0, end));
+        }
+        return ancestors;
     }
-    
-    // 获取点赞数量
-    public int getLikeCount() {
-        return likedBy.size();
+
+    /**
+     * 判断路径是否位于某个给定路径的子树之下（不含自身）
+     */
+    public static boolean hasAncestorIn(String path, Set<String> paths) {
+        if (paths.isEmpty() || path == null) return false;
+        for (int end = PATH_SEGMENT_LENGTH; end < path.length(); end += PATH_SEGMENT_LENGTH) {
+            if (paths.contains(path.substring(0, end))) return true;
+        }
+        return false;
     }
-    
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -97,4 +156,11 @@ public class Comment {
     public void setParent(Comment parent) { this.parent = parent; }
     public List<Comment> getReplies() { return this.replies; }
     public Set<User> getLikedBy() { return this.likedBy; }
+    public String getPath() { return this.path; }
+    public void setPath(String path) { this.path = path; }
+    public Integer getDepth() { return this.depth; }
+    public void setDepth(Integer depth) { this.depth = depth; }
+    public int getLikeCount() { return this.likeCount; }
+    public int getReplyCount() { return this.replyCount; }
+    public boolean isDeleted() { return this.deleted; }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.example.qimo.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 用户对书籍的评分（1-5分），每个用户对每本书只有一条。
+ * 写入由 RatingService 通过原生语句完成，并同步增量更新书籍上的评分汇总；
+ * 书籍或用户删除时由数据库外键级联删除评分。
+ */
+@Getter
+@Setter
+@ToString(exclude = {"user", "book"})
+@Entity
+@Table(name = "ratings", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_ratings_user_book", columnNames = {"user_id", "book_id"})
+}, indexes = {
+    @Index(name = "idx_ratings_book", columnList = "book_id")
+})
+public class Rating {
+
+    public static final int MIN_SCORE = 1;
+    public static final int MAX_SCORE = 5;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Book book;
+
+    @Column(nullable = false, columnDefinition = "TINYINT NOT NULL")
+    private int score;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,381 @@
+package com.example.qimo.index;
+
+import com.example.qimo.dto.BookFacetFilter;
+import com.example.qimo.entity.Book;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 书籍分面筛选索引（分类、出版年代、出版社）。
+ * 每本书分配一个稠密序号，每个分类、年代和出版社各维护一个压缩的序号位图（{@link OrdinalBitmap}），
+ * 出版社取值虽多，但多数出版社的书很少，压缩位图的内存与书籍数成正比。
+ * 多选筛选通过位图求并/求交完成，各取值的计数用位图求交的基数计算，不需要逐维度执行 GROUP BY，也不扫描全部书籍。
+ * 计数结果按筛选条件缓存，索引变化后失效。
+ */
+@Component
+public class BookFacetIndex implements BookIndex {
+
+    private static final int NONE = -1;
+    private static final long NO_CATEGORY = Long.MIN_VALUE;
+    private static final int NO_DECADE = Integer.MIN_VALUE;
+    // 出版社计数最多返回的取值数（已选中的取值总是返回）
+    private static final int MAX_PUBLISHER_VALUES = 20;
+    // 缓存计数结果的筛选条件数
+    private static final int MAX_CACHED_COUNTS = 256;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final OrdinalBitmap live = new OrdinalBitmap();
+    private final Map<Long, OrdinalBitmap> byCategory = new HashMap<>();
+    private final Map<Integer, OrdinalBitmap> byDecade = new HashMap<>();
+    // 出版社编号 -> 位图，没有书的出版社为 null
+    private final List<OrdinalBitmap> byPublisher = new ArrayList<>();
+    private final Map<String, Integer> publisherIds = new HashMap<>();
+    private final List<String> publisherNames = new ArrayList<>();
+    // 索引的修改次数，用于判断缓存的计数是否过期
+    private volatile long version;
+    private final Map<List<Object>, CachedCounts> countCache = new LinkedHashMap<List<Object>, CachedCounts>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedCounts> eldest) {
+            return size() > MAX_CACHED_COUNTS;
+        }
+    };
+    private int nextOrdinal;
+    // 按序号存储的列
+    private long[] ids = new long[1024];
+    private long[] createdAt = new long[1024];
+    private long[] categoryCol = new long[1024];
+    private int[] decadeCol = new int[1024];
+    private int[] publisherCol = new int[1024];
+    private volatile boolean ready;
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) return;
+        long category = book.getCategoryId() != null ? book.getCategoryId() : NO_CATEGORY;
+        int decade = book.getYear() != null ? decadeOf(book.getYear()) : NO_DECADE;
+        long created = book.getCreatedAt() != null ? book.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+        String publisher = book.getPublisher() != null ? book.getPublisher().trim() : "";
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = ordinals.get(book.getId());
+            int ord;
+            if (existing != null) {
+                ord = existing;
+                clearFacets(ord);
+            } else {
+                ord = allocate();
+                ordinals.put(book.getId(), ord);
+                live.add(ord);
+            }
+            ids[ord] = book.getId();
+            createdAt[ord] = created;
+            categoryCol[ord] = category;
+            decadeCol[ord] = decade;
+            publisherCol[ord] = publisher.isEmpty() ? NONE : publisherId(publisher);
+            if (category != NO_CATEGORY) byCategory.computeIfAbsent(category, k -> new OrdinalBitmap()).add(ord);
+            if (decade != NO_DECADE) byDecade.computeIfAbsent(decade, k -> new OrdinalBitmap()).add(ord);
+            if (publisherCol[ord] != NONE) {
+                int id = publisherCol[ord];
+                if (byPublisher.get(id) == null) byPublisher.set(id, new OrdinalBitmap());
+                byPublisher.get(id).add(ord);
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        if (bookId == null) return;
+        lock.writeLock().lock();
+        try {
+            Integer ord = ordinals.remove(bookId);
+            if (ord == null) return;
+            clearFacets(ord);
+            live.remove(ord);
+            freeOrdinals.push(ord);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 按筛选条件分页查询，结果按创建时间、ID倒序
+     * @param filter 筛选条件
+     * @param offset 起始位置
+     * @param limit 每页数量
+     * @return 命中总数及当前页的书籍ID
+     */
+    public BookSearchIndex.Hits search(BookFacetFilter filter, long offset, int limit) {
+        lock.readLock().lock();
+        try {
+            OrdinalBitmap match = and(and(categoryMask(filter), decadeMask(filter)), publisherMask(filter));
+            if (match == null) match = live;
+
+            // 只需要前 offset + limit 条，用小顶堆保留最新的若干条
+            int keep = (int) Math.min(Integer.MAX_VALUE - 1, offset + limit);
+            PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(1, Math.min(keep, 1024)), this::compareNewest);
+            match.forEach(ord -> {
+                heap.offer(ord);
+                if (heap.size() > keep) heap.poll();
+            });
+            Integer[] newestFirst = heap.toArray(new Integer[0]);
+            Arrays.sort(newestFirst, (a, b) -> compareNewest(b, a));
+            List<Long> page = new ArrayList<>(limit);
+            for (long i = offset; i < newestFirst.length && page.size() < limit; i++) {
+                page.add(ids[newestFirst[(int) i]]);
+            }
+            return new BookSearchIndex.Hits(match.cardinality(), page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 计算各维度取值的数量（每个维度应用其它维度的筛选条件）
+     * @param filter 当前筛选条件
+     * @return 各维度计数
+     */
+    public Counts count(BookFacetFilter filter) {
+        List<Object> key = Arrays.asList(filter.getCategoryIds(), filter.getDecades(), filter.getPublishers());
+        lock.readLock().lock();
+        try {
+            synchronized (countCache) {
+                CachedCounts cached = countCache.get(key);
+                if (cached != null && cached.version == version) return cached.counts;
+            }
+            // 读锁内索引不变，按当前版本缓存
+            long current = version;
+            OrdinalBitmap categoryMask = categoryMask(filter);
+            OrdinalBitmap decadeMask = decadeMask(filter);
+            OrdinalBitmap publisherMask = publisherMask(filter);
+
+            // 各取值的位图只包含在库的书籍，没有其它维度的筛选时直接取其基数
+            Map<Long, Integer> categories = new HashMap<>();
+            OrdinalBitmap base = and(decadeMask, publisherMask);
+            for (Map.Entry<Long, OrdinalBitmap> e : byCategory.entrySet()) {
+                categories.put(e.getKey(), count(base, e.getValue()));
+            }
+
+            Map<Integer, Integer> decades = new HashMap<>();
+            base = and(categoryMask, publisherMask);
+            for (Map.Entry<Integer, OrdinalBitmap> e : byDecade.entrySet()) {
+                decades.put(e.getKey(), count(base, e.getValue()));
+            }
+
+            base = and(categoryMask, decadeMask);
+            int[] tally = new int[byPublisher.size()];
+            for (int id = 0; id < tally.length; id++) {
+                OrdinalBitmap set = byPublisher.get(id);
+                if (set != null) tally[id] = count(base, set);
+            }
+            Counts counts = new Counts(categories, decades, topPublishers(tally, filter));
+            synchronized (countCache) {
+                countCache.put(key, new CachedCounts(current, counts));
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 出版年份所在年代的起始年份
+     */
+    public static int decadeOf(int year) {
+        return Math.floorDiv(year, 10) * 10;
+    }
+
+    private Map<String, Integer> topPublishers(int[] tally, BookFacetFilter filter) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>((a, b) -> tally[a] != tally[b]
+                ? Integer.compare(tally[a], tally[b]) : publisherNames.get(b).compareTo(publisherNames.get(a)));
+        for (int id = 0; id < tally.length; id++) {
+            if (tally[id] == 0) continue;
+            heap.offer(id);
+            if (heap.size() > MAX_PUBLISHER_VALUES) heap.poll();
+        }
+        List<Integer> top = new ArrayList<>(heap);
+        top.sort((a, b) -> tally[a] != tally[b] ? Integer.compare(tally[b], tally[a]) : publisherNames.get(a).compareTo(publisherNames.get(b)));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Integer id : top) {
+            result.put(publisherNames.get(id), tally[id]);
+        }
+        for (String selected : filter.getPublishers()) {
+            Integer id = publisherIds.get(selected);
+            result.putIfAbsent(selected, id != null ? tally[id] : 0);
+        }
+        return result;
+    }
+
+    private OrdinalBitmap categoryMask(BookFacetFilter filter) {
+        if (filter.getCategoryIds().isEmpty()) return null;
+        OrdinalBitmap mask = new OrdinalBitmap();
+        for (Long id : filter.getCategoryIds()) {
+            OrdinalBitmap set = byCategory.get(id);
+            if (set != null) mask = OrdinalBitmap.or(mask, set);
+        }
+        return mask;
+    }
+
+    private OrdinalBitmap decadeMask(BookFacetFilter filter) {
+        if (filter.getDecades().isEmpty()) return null;
+        OrdinalBitmap mask = new OrdinalBitmap();
+        for (Integer decade : filter.getDecades()) {
+            OrdinalBitmap set = byDecade.get(decade);
+            if (set != null) mask = OrdinalBitmap.or(mask, set);
+        }
+        return mask;
+    }
+
+    private OrdinalBitmap publisherMask(BookFacetFilter filter) {
+        if (filter.getPublishers().isEmpty()) return null;
+        OrdinalBitmap mask = new OrdinalBitmap();
+        for (String name : filter.getPublishers()) {
+            Integer id = publisherIds.get(name);
+            OrdinalBitmap set = id != null ? byPublisher.get(id) : null;
+            if (set != null) mask = OrdinalBitmap.or(mask, set);
+        }
+        return mask;
+    }
+
+    /**
+     * 两个筛选条件求交，null 表示该维度不筛选
+     */
+    private static OrdinalBitmap and(OrdinalBitmap a, OrdinalBitmap b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return OrdinalBitmap.and(a, b);
+    }
+
+    private static int count(OrdinalBitmap base, OrdinalBitmap values) {
+        return base == null ? values.cardinality() : OrdinalBitmap.andCardinality(base, values);
+    }
+
+    // 升序比较：较旧的排在前面（先被堆淘汰）
+    private int compareNewest(int a, int b) {
+        if (createdAt[a] != createdAt[b]) return Long.compare(createdAt[a], createdAt[b]);
+        return Long.compare(ids[a], ids[b]);
+    }
+
+    private void clearFacets(int ord) {
+        long category = categoryCol[ord];
+        if (category != NO_CATEGORY) {
+            OrdinalBitmap set = byCategory.get(category);
+            if (set != null) {
+                set.remove(ord);
+                if (set.isEmpty()) byCategory.remove(category);
+            }
+        }
+        int decade = decadeCol[ord];
+        if (decade != NO_DECADE) {
+            OrdinalBitmap set = byDecade.get(decade);
+            if (set != null) {
+                set.remove(ord);
+                if (set.isEmpty()) byDecade.remove(decade);
+            }
+        }
+        int publisher = publisherCol[ord];
+        if (publisher != NONE) {
+            OrdinalBitmap set = byPublisher.get(publisher);
+            if (set != null) {
+                set.remove(ord);
+                if (set.isEmpty()) byPublisher.set(publisher, null);
+            }
+        }
+        categoryCol[ord] = NO_CATEGORY;
+        decadeCol[ord] = NO_DECADE;
+        publisherCol[ord] = NONE;
+    }
+
+    private int allocate() {
+        if (!freeOrdinals.isEmpty()) return freeOrdinals.pop();
+        int ord = nextOrdinal++;
+        if (ord >= ids.length) {
+            int size = ids.length * 2;
+            ids = Arrays.copyOf(ids, size);
+            createdAt = Arrays.copyOf(createdAt, size);
+            categoryCol = Arrays.copyOf(categoryCol, size);
+            decadeCol = Arrays.copyOf(decadeCol, size);
+            publisherCol = Arrays.copyOf(publisherCol, size);
+        }
+        return ord;
+    }
+
+    private int publisherId(String name) {
+        Integer id = publisherIds.get(name);
+        if (id == null) {
+            id = publisherNames.size();
+            publisherIds.put(name, id);
+            publisherNames.add(name);
+            byPublisher.add(null);
+        }
+        return id;
+    }
+
+    private static final class CachedCounts {
+        final long version;
+        final Counts counts;
+
+        CachedCounts(long version, Counts counts) {
+            this.version = version;
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * 各维度取值的命中数量
+     */
+    public static final class Counts {
+        private final Map<Long, Integer> categories;
+        private final Map<Integer, Integer> decades;
+        private final Map<String, Integer> publishers;
+
+        Counts(Map<Long, Integer> categories, Map<Integer, Integer> decades, Map<String, Integer> publishers) {
+            this.categories = categories;
+            this.decades = decades;
+            this.publishers = publishers;
+        }
+
+        public Map<Long, Integer> getCategories() {
+            return categories;
+        }
+
+        public Map<Integer, Integer> getDecades() {
+            return decades;
+        }
+
+        /**
+         * @return 数量最多的若干出版社（按数量降序），以及所有已选中的出版社
+         */
+        public Map<String, Integer> getPublishers() {
+            return publishers;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.qimo.index;
+
+import com.example.qimo.entity.Book;
+
+/**
+ * 书籍内存索引的统一接口。
+ * 实现类由 {@link BookIndexRegistry} 统一管理：启动时全量预热，之后随 saveBook/deleteBook 增量更新。
+ */
+public interface BookIndex {
+
+    /**
+     * 新增或更新一本书的索引（同一ID重复调用视为更新）
+     * @param book 书籍（至少包含id）
+     */
+    void index(Book book);
+
+    /**
+     * 从索引中移除一本书
+     * @param bookId 书籍ID
+     */
+    void remove(Long bookId);
+
+    /**
+     * 预热完成后调用，此后索引可以对外提供查询
+     */
+    void markReady();
+
+    /**
+     * @return 索引是否已完成预热
+     */
+    boolean isReady();
+}
@@ -0,0 +1,105 @@
+package com.example.qimo.index;
+
+import com.example.qimo.entity.Book;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 管理所有 {@link BookIndex}：负责启动预热，以及把书籍的增删改广播给各个索引。
+ * 预热期间被实时修改过的书籍会在预热扫描中被跳过，避免旧数据覆盖新数据。
+ */
+@Component
+public class BookIndexRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(BookIndexRegistry.class);
+
+    private final List<BookIndex> indexes;
+    private final JdbcTemplate jdbcTemplate;
+
+    // 预热期间被实时修改过的书籍ID（受 this 监视器保护）
+    private final Set<Long> touchedDuringWarmup = new HashSet<>();
+    private boolean warmingUp;
+
+    @Autowired
+    public BookIndexRegistry(List<BookIndex> indexes, JdbcTemplate jdbcTemplate) {
+        this.indexes = indexes;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 书籍新增或更新后调用（应在事务提交后调用）
+     */
+    public synchronized void onSaved(Book book) {
+        if (book == null || book.getId() == null) return;
+        if (warmingUp) touchedDuringWarmup.add(book.getId());
+        for (BookIndex index : indexes) {
+            index.index(book);
+        }
+    }
+
+    /**
+     * 书籍删除后调用（应在事务提交后调用）
+     */
+    public synchronized void onDeleted(Long bookId) {
+        if (bookId == null) return;
+        if (warmingUp) touchedDuringWarmup.add(bookId);
+        for (BookIndex index : indexes) {
+            index.remove(bookId);
+        }
+    }
+
+    /**
+     * 以流式游标扫描 books 表，全量构建所有索引
+     */
+    public void warmup() {
+        synchronized (this) {
+            warmingUp = true;
+            touchedDuringWarmup.clear();
+        }
+        long start = System.currentTimeMillis();
+        long[] loaded = {0};
+        try {
+            // MySQL 驱动只有在 fetchSize = Integer.MIN_VALUE 时才会逐行流式读取，避免一次性装入整张表
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(Integer.MIN_VALUE);
+            streaming.query("SELECT id, title, author, isbn, publisher, description, year, category_id, created_at FROM books ORDER BY id",
+                rs -> {
+                    Book book = new Book();
+                    book.setId(rs.getLong("id"));
+                    book.setTitle(rs.getString("title"));
+                    book.setAuthor(rs.getString("author"));
+                    book.setIsbn(rs.getString("isbn"));
+                    book.setPublisher(rs.getString("publisher"));
+                    book.setDescription(rs.getString("description"));
+                    int year = rs.getInt("year");
+                    if (!rs.wasNull()) book.setYear(year);
+                    long categoryId = rs.getLong("category_id");
+                    if (!rs.wasNull()) book.setCategoryId(categoryId);
+                    book.setCreatedAt(rs.getTimestamp("created_at") == null ? null : rs.getTimestamp("created_at").toLocalDateTime());
+                    synchronized (this) {
+                        if (!touchedDuringWarmup.contains(book.getId())) {
+                            for (BookIndex index : indexes) {
+                                index.index(book);
+                            }
+                        }
+                    }
+                    loaded[0]++;
+                });
+        } finally {
+            synchronized (this) {
+                warmingUp = false;
+                touchedDuringWarmup.clear();
+            }
+        }
+        for (BookIndex index : indexes) {
+            index.markReady();
+        }
+        logger.info("Book indexes warmed up: {} books, {} indexes, {} ms", loaded[0], indexes.size(), System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.qimo.index;
+
+import com.example.qimo.entity.Book;
+import com.example.qimo.support.Isbn;
+import com.example.qimo.support.LongLongHashMap;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ISBN 成员索引：以规范化后的 13 位 ISBN 数值为键，记录每个 ISBN 对应的书籍数量。
+ * 用于重复检查的快速否定判断——键不存在时可以确定 ISBN 未被使用，无需访问数据库；
+ * 键存在时由调用方再到数据库确认（格式异常的历史 ISBN 不进入索引）。books.isbn 以规范写法保存并有唯一索引。
+ */
+@Component
+public class BookIsbnIndex implements BookIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // ISBN 键 -> 使用该 ISBN 的书籍数
+    private final LongLongHashMap counts = new LongLongHashMap(1 << 16);
+    // 书籍ID -> ISBN 键，用于更新/删除时撤销旧的键
+    private final LongLongHashMap byBook = new LongLongHashMap(1 << 16);
+    private volatile boolean ready;
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) return;
+        long key = Isbn.toKey(book.getIsbn());
+        lock.writeLock().lock();
+        try {
+            removeInternal(book.getId());
+            if (key != Isbn.INVALID) {
+                counts.addTo(key, 1);
+                byBook.put(book.getId(), key, Isbn.INVALID);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        if (bookId == null) return;
+        lock.writeLock().lock();
+        try {
+            removeInternal(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * ISBN 是否可能已被使用
+     * @param isbn 原始 ISBN
+     * @return false 表示一定未被使用；true 表示可能已被使用（包括索引未就绪或 ISBN 无法解析的情况），需查询数据库确认
+     */
+    public boolean mightContain(String isbn) {
+        return mightContain(isbn, null);
+    }
+
+    /**
+     * ISBN 是否可能已被除 excludeBookId 以外的书籍使用
+     * @param isbn 原始 ISBN
+     * @param excludeBookId 排除的书籍ID（编辑时为当前书籍），可为null
+     * @return false 表示一定未被其他书籍使用；true 表示需查询数据库确认
+     */
+    public boolean mightContain(String isbn, Long excludeBookId) {
+        if (!ready) return true;
+        long key = Isbn.toKey(isbn);
+        if (key == Isbn.INVALID) return true;
+        lock.readLock().lock();
+        try {
+            long count = counts.get(key, 0);
+            if (count == 0) return false;
+            // 唯一使用该 ISBN 的正是被排除的书籍
+            return !(count == 1 && excludeBookId != null && byBook.get(excludeBookId, Isbn.INVALID) == key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeInternal(long bookId) {
+        long old = byBook.remove(bookId, Isbn.INVALID);
+        if (old != Isbn.INVALID) counts.addTo(old, -1);
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.qimo.index;
+
+import com.example.qimo.entity.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 书籍全文倒排索引（书名、作者、出版社、简介）。
+ * 中文按二元组切分，英文/数字按单词切分并支持前缀匹配；多个词之间为“与”关系，
+ * 结果按 TF-IDF 相关度排序，替代 {@code LIKE '%kw%'} 的全表扫描。
+ * 每个词的倒排表是按书籍ID排序的 long[] 与平行的 float[] 权重（每条约 12 字节，没有装箱对象），按二分查找取权重。
+ */
+@Component
+public class BookSearchIndex implements BookIndex {
+
+    private static final float TITLE_WEIGHT = 4.0f;
+    private static final float AUTHOR_WEIGHT = 3.0f;
+    private static final float PUBLISHER_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    // 英文前缀展开的词数超过该值时不预先合并倒排表，改为按书籍ID逐个查询（结果仍完整）
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // 词 -> 倒排表
+    private final NavigableMap<String, PostingList> postings = new TreeMap<>();
+    // 书籍ID -> 已索引的倒排表，用于更新/删除时撤销旧的倒排记录
+    private final Map<Long, IndexedDoc> docs = new HashMap<>();
+    private volatile boolean ready;
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) return;
+        Map<String, Float> terms = new HashMap<>();
+        addField(terms, book.getTitle(), TITLE_WEIGHT, true);
+        addField(terms, book.getAuthor(), AUTHOR_WEIGHT, true);
+        addField(terms, book.getPublisher(), PUBLISHER_WEIGHT, true);
+        addField(terms, book.getDescription(), DESCRIPTION_WEIGHT, false);
+        Long categoryId = book.getCategoryId();
+        long id = book.getId();
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(book.getId());
+            PostingList[] lists = new PostingList[terms.size()];
+            int n = 0;
+            for (Map.Entry<String, Float> e : terms.entrySet()) {
+                // 文档只引用倒排表（其中保存唯一的词字符串），不为每本书保存词的副本
+                PostingList list = postings.computeIfAbsent(e.getKey(), PostingList::new);
+                list.put(id, e.getValue());
+                lists[n++] = list;
+            }
+            docs.put(book.getId(), new IndexedDoc(lists, categoryId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        if (bookId == null) return;
+        lock.writeLock().lock();
+        try {
+            removeInternal(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void markReady() {
+        // 预热完成后释放倒排表数组的预留空间
+        lock.writeLock().lock();
+        try {
+            postings.values().forEach(PostingList::trim);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 按相关度分页搜索
+     * @param query 搜索关键词
+     * @param categoryId 分类ID，为null时不过滤
+     * @param offset 起始位置
+     * @param limit 每页数量
+     * @return 命中总数及当前页的书籍ID（已按相关度排序）
+     */
+    public Hits search(String query, Long categoryId, long offset, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(TextTokenizer.tokenize(query, false));
+        if (queryTerms.isEmpty()) return Hits.EMPTY;
+
+        lock.readLock().lock();
+        try {
+            int docCount = docs.size();
+            List<Postings> lists = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                Postings list = resolve(term);
+                if (list.size() == 0) return Hits.EMPTY;
+                lists.add(list);
+            }
+            // 从最短的倒排表开始求交集
+            lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            double[] idfs = new double[lists.size()];
+            for (int i = 0; i < idfs.length; i++) {
+                idfs[i] = Math.log(1.0 + (double) docCount / lists.get(i).size());
+            }
+
+            List<Hit> hits = new ArrayList<>();
+            PostingList shortest = lists.get(0).merged();
+            for (int k = 0; k < shortest.size; k++) {
+                long id = shortest.ids[k];
+                if (categoryId != null && !Objects.equals(categoryId, docs.get(id).categoryId)) continue;
+                double score = shortest.weights[k] * idfs[0];
+                boolean matched = true;
+                for (int i = 1; i < lists.size(); i++) {
+                    float w = lists.get(i).get(id);
+                    if (Float.isNaN(w)) {
+                        matched = false;
+                        break;
+                    }
+                    score += w * idfs[i];
+                }
+                if (matched) hits.add(new Hit(id, score));
+            }
+
+            // 相关度降序，相同分数时新书（ID较大）在前
+            hits.sort((a, b) -> a.score != b.score ? Double.compare(b.score, a.score) : Long.compare(b.id, a.id));
+            List<Long> page = new ArrayList<>(Math.max(0, Math.min(limit, hits.size())));
+            for (long i = offset; i < hits.size() && page.size() < limit; i++) {
+                page.add(hits.get((int) i).id);
+            }
+            return new Hits(hits.size(), page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Postings resolve(String term) {
+        if (!TextTokenizer.isWordToken(term)) {
+            PostingList exact = postings.get(term);
+            return new Postings(exact != null ? exact : PostingList.EMPTY);
+        }
+        // 英文/数字词按前缀展开，与原先 LIKE 的子串匹配效果接近
+        NavigableMap<String, PostingList> range = postings.subMap(term, true, term + Character.MAX_VALUE, true);
+        if (range.isEmpty()) return new Postings(PostingList.EMPTY);
+        if (range.size() == 1) return new Postings(range.firstEntry().getValue());
+        if (range.size() > MAX_PREFIX_EXPANSIONS) {
+            // 展开的词过多（如单字母前缀）：只在作为求交集的驱动表时才合并
+            return new Postings(new ArrayList<>(range.values()));
+        }
+        return new Postings(mergeMax(new ArrayList<>(range.values()), 0, range.size()));
+    }
+
+    /**
+     * 两两归并有序的倒排表，同一本书取最大权重
+     */
+    private static PostingList mergeMax(List<PostingList> lists, int from, int to) {
+        if (to - from == 1) return lists.get(from);
+        int mid = (from + to) >>> 1;
+        PostingList a = mergeMax(lists, from, mid);
+        PostingList b = mergeMax(lists, mid, to);
+        PostingList merged = new PostingList(null, a.size + b.size);
+        int i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.ids[i] < b.ids[j])) {
+                merged.append(a.ids[i], a.weights[i++]);
+            } else if (i == a.size || b.ids[j] < a.ids[i]) {
+                merged.append(b.ids[j], b.weights[j++]);
+            } else {
+                merged.append(a.ids[i], Math.max(a.weights[i++], b.weights[j++]));
+            }
+        }
+        return merged;
+    }
+
+    private void removeInternal(Long bookId) {
+        IndexedDoc old = docs.remove(bookId);
+        if (old == null) return;
+        for (PostingList list : old.lists) {
+            list.remove(bookId);
+            if (list.size == 0) postings.remove(list.term);
+        }
+    }
+
+    private static void addField(Map<String, Float> terms, String text, float weight, boolean cjkUnigrams) {
+        if (text == null || text.isEmpty()) return;
+        Map<String, Integer> tf = new HashMap<>();
+        for (String token : TextTokenizer.tokenize(text, cjkUnigrams)) {
+            tf.merge(token, 1, Integer::sum);
+        }
+        // 词频取对数衰减，避免长简介中的高频词压过书名
+        for (Map.Entry<String, Integer> e : tf.entrySet()) {
+            float w = weight * (1.0f + (float) Math.log(e.getValue()));
+            terms.merge(e.getKey(), w, Float::sum);
+        }
+    }
+
+    private static final class IndexedDoc {
+        final PostingList[] lists;
+        final Long categoryId;
+
+        IndexedDoc(PostingList[] lists, Long categoryId) {
+            this.lists = lists;
+            this.categoryId = categoryId;
+        }
+    }
+
+    /**
+     * 一个词的倒排表：按书籍ID升序的 ids 与平行的 weights。
+     * 预热时书籍按ID顺序加入，追加到末尾；增量更新时按二分查找插入或删除
+     */
+    private static final class PostingList {
+        static final PostingList EMPTY = new PostingList(null, 0);
+
+        final String term;
+        long[] ids;
+        float[] weights;
+        int size;
+
+        PostingList(String term) {
+            this(term, 2);
+        }
+
+        PostingList(String term, int capacity) {
+            this.term = term;
+            this.ids = new long[capacity];
+            this.weights = new float[capacity];
+        }
+
+        /**
+         * @return 书籍的权重，不在表中时为 NaN
+         */
+        float get(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            return i >= 0 ? weights[i] : Float.NaN;
+        }
+
+        void put(long id, float weight) {
+            if (size == 0 || ids[size - 1] < id) {
+                append(id, weight);
+                return;
+            }
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) {
+                weights[i] = weight;
+                return;
+            }
+            i = -i - 1;
+            grow();
+            System.arraycopy(ids, i, ids, i + 1, size - i);
+            System.arraycopy(weights, i, weights, i + 1, size - i);
+            ids[i] = id;
+            weights[i] = weight;
+            size++;
+        }
+
+        void append(long id, float weight) {
+            grow();
+            ids[size] = id;
+            weights[size++] = weight;
+        }
+
+        void remove(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0) return;
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            System.arraycopy(weights, i + 1, weights, i, size - i - 1);
+            size--;
+        }
+
+        void trim() {
+            if (ids.length > size) {
+                ids = Arrays.copyOf(ids, size);
+                weights = Arrays.copyOf(weights, size);
+            }
+        }
+
+        private void grow() {
+            if (size < ids.length) return;
+            int capacity = Math.max(2, ids.length + (ids.length >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+    }
+
+    /**
+     * 一个查询词对应的倒排表：单个词为原表；前缀展开出的多个词或者预先合并，或者保留各词的原表，
+     * 查询某本书的权重时取各词中的最大值
+     */
+    private static final class Postings {
+        private PostingList merged;
+        private final List<PostingList> parts;
+        // 未合并时为各词倒排表长度之和（合并后长度的上界），只用于排序和估算 IDF
+        private final int size;
+
+        Postings(PostingList merged) {
+            this.merged = merged;
+            this.parts = null;
+            this.size = merged.size;
+        }
+
+        Postings(List<PostingList> parts) {
+            this.parts = parts;
+            int total = 0;
+            for (PostingList part : parts) total += part.size;
+            this.size = total;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return 书籍的权重，不匹配时为 NaN
+         */
+        float get(long id) {
+            if (merged != null) return merged.get(id);
+            float max = Float.NaN;
+            for (PostingList part : parts) {
+                float w = part.get(id);
+                if (!Float.isNaN(w) && (Float.isNaN(max) || w > max)) max = w;
+            }
+            return max;
+        }
+
+        PostingList merged() {
+            if (merged == null) merged = mergeMax(parts, 0, parts.size());
+            return merged;
+        }
+    }
+
+    private static final class Hit {
+        final long id;
+        final double score;
+
+        Hit(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 一次搜索的结果：命中总数与当前页的书籍ID
+     */
+    public static final class Hits {
+        static final Hits EMPTY = new Hits(0, Collections.emptyList());
+
+        private final long total;
+        private final List<Long> ids;
+
+        public Hits(long total, List<Long> ids) {
+            this.total = total;
+            this.ids = ids;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+    }
+}
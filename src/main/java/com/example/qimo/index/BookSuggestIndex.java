@@ -0,0 +1,343 @@
+package com.example.qimo.index;
+
+import com.example.qimo.dto.Suggestion;
+import com.example.qimo.entity.Book;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 搜索框自动补全索引：书名与作者（归一化后）的有序词表，前缀查询即词表上的一段连续区间。
+ * 每个词只占一个条目（而不是每个字符一个前缀树节点），内存随词数而不是字符数增长。
+ * 建议按搜索频率（{@link QueryFrequencySketch} 估计）排序，其次按关联的书籍数。
+ * 查询过的前缀缓存其 top-K（不可变对象），书籍变更时在写锁内增量更新路径上已缓存的前缀，
+ * 记录搜索时把该词条并入其各前缀已缓存的 top-K。频率衰减等其余变化通过缓存的有效期体现：
+ * 过期的 top-K 继续返回，同时由后台线程重新计算（每个前缀同时只有一个计算任务）；
+ * 未缓存的前缀由第一个请求计算，并发的相同请求等待其结果，不重复扫描。
+ */
+@Component
+public class BookSuggestIndex implements BookIndex {
+    private static final Logger logger = LoggerFactory.getLogger(BookSuggestIndex.class);
+
+    // 每个前缀缓存的建议数，也是单次返回的上限
+    public static final int MAX_SUGGESTIONS = 10;
+    // 前缀 top-K 缓存的有效期，过期后按最新的搜索频率重新计算
+    private static final long TOP_K_TTL_MILLIS = 30_000;
+    // 缓存的前缀数上限，超出后整体清空
+    private static final int MAX_CACHED_PREFIXES = 10_000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // 归一化的词 -> 词条
+    private final NavigableMap<String, Term> terms = new TreeMap<>();
+    // 前缀 -> top-K；读锁内只做整体替换，写锁内增量更新
+    private final Map<String, TopK> topByPrefix = new ConcurrentHashMap<>();
+    // 书籍ID -> 已索引的 {书名键, 作者键}，用于更新/删除时撤销
+    private final Map<Long, String[]> keysByBook = new HashMap<>();
+    private final QueryFrequencySketch sketch = new QueryFrequencySketch(1 << 14);
+    // 正在首次计算的前缀 -> 计算结果，供并发的相同请求等待
+    private final Map<String, CompletableFuture<TopK>> loading = new ConcurrentHashMap<>();
+    // 已提交后台刷新的前缀
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor refresher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(256), r -> {
+        Thread t = new Thread(r, "suggest-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean ready;
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) return;
+        String title = display(book.getTitle());
+        String author = display(book.getAuthor());
+        lock.writeLock().lock();
+        try {
+            removeInternal(book.getId());
+            String titleKey = add(title, true);
+            String authorKey = add(author, false);
+            keysByBook.put(book.getId(), new String[]{titleKey, authorKey});
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        if (bookId == null) return;
+        lock.writeLock().lock();
+        try {
+            removeInternal(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 记录一次完整搜索，用于建议排序
+     * @param query 用户提交的搜索词
+     */
+    public void recordQuery(String query) {
+        String key = TextTokenizer.normalize(query);
+        if (key.isEmpty()) return;
+        sketch.increment(key);
+        lock.readLock().lock();
+        try {
+            Term term = terms.get(key);
+            if (term == null) return;
+            // 频率上升：并入各前缀已缓存的 top-K（单个前缀上的替换是原子的）
+            Scored scored = new Scored(term, sketch.estimate(key));
+            for (int len = 1; len <= key.length(); len++) {
+                topByPrefix.computeIfPresent(key.substring(0, len), (prefix, top) -> top.with(scored));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * 按前缀获取建议
+     * @param prefix 用户已输入的内容
+     * @param limit 返回数量上限（不超过 {@link #MAX_SUGGESTIONS}）
+     * @return 建议列表，按热度降序
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = TextTokenizer.normalize(prefix);
+        if (key.isEmpty() || limit <= 0) return Collections.emptyList();
+        lock.readLock().lock();
+        try {
+            TopK top = topByPrefix.get(key);
+            if (top == null) {
+                top = load(key);
+            } else if (System.currentTimeMillis() - top.computedAt > TOP_K_TTL_MILLIS) {
+                refreshLater(key);
+            }
+            List<Suggestion> result = new ArrayList<>(Math.min(limit, top.entries.length));
+            for (int i = 0; i < top.entries.length && result.size() < limit; i++) {
+                Term term = top.entries[i].term;
+                result.add(new Suggestion(term.display,
+                        term.titleRefs >= term.authorRefs ? Suggestion.TYPE_TITLE : Suggestion.TYPE_AUTHOR));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 首次计算前缀的 top-K（调用方持有读锁）；同一前缀的并发请求只计算一次
+     */
+    private TopK load(String prefix) {
+        CompletableFuture<TopK> mine = new CompletableFuture<>();
+        CompletableFuture<TopK> running = loading.putIfAbsent(prefix, mine);
+        if (running != null) return running.join();
+        try {
+            TopK top = computeTop(prefix, System.currentTimeMillis());
+            cache(prefix, top);
+            mine.complete(top);
+            return top;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(prefix);
+        }
+    }
+
+    /**
+     * 过期的 top-K 继续使用，由后台线程按最新的搜索频率重新计算
+     */
+    private void refreshLater(String prefix) {
+        if (!refreshing.add(prefix)) return;
+        try {
+            refresher.execute(() -> {
+                lock.readLock().lock();
+                try {
+                    // 期间被清出缓存的前缀不再写回
+                    if (topByPrefix.containsKey(prefix)) {
+                        topByPrefix.put(prefix, computeTop(prefix, System.currentTimeMillis()));
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("刷新搜索建议失败: {}", prefix, e);
+                } finally {
+                    lock.readLock().unlock();
+                    refreshing.remove(prefix);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 刷新任务积压，下次请求再提交
+            refreshing.remove(prefix);
+        }
+    }
+
+    private void cache(String prefix, TopK top) {
+        if (topByPrefix.size() >= MAX_CACHED_PREFIXES) topByPrefix.clear();
+        topByPrefix.put(prefix, top);
+    }
+
+    private NavigableMap<String, Term> range(String prefix) {
+        return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+    }
+
+    private TopK computeTop(String prefix, long now) {
+        // 小顶堆保留得分最高的 K 个词条
+        PriorityQueue<Scored> heap = new PriorityQueue<>(MAX_SUGGESTIONS + 1, Scored::compareTo);
+        for (Term term : range(prefix).values()) {
+            heap.offer(new Scored(term, sketch.estimate(term.key)));
+            if (heap.size() > MAX_SUGGESTIONS) heap.poll();
+        }
+        Scored[] entries = new Scored[heap.size()];
+        for (int i = entries.length - 1; i >= 0; i--) {
+            entries[i] = heap.poll();
+        }
+        return new TopK(entries, now);
+    }
+
+    private String add(String display, boolean title) {
+        if (display == null) return null;
+        String key = TextTokenizer.normalize(display);
+        if (key.isEmpty()) return null;
+        Term term = terms.computeIfAbsent(key, k -> new Term(k, display));
+        if (title) term.titleRefs++;
+        else term.authorRefs++;
+        // 得分只升不降：已缓存的前缀只需把该词条并入各自的 top-K
+        Scored scored = new Scored(term, sketch.estimate(key));
+        for (int len = 1; len <= key.length(); len++) {
+            String prefix = key.substring(0, len);
+            TopK top = topByPrefix.get(prefix);
+            if (top != null) topByPrefix.put(prefix, top.with(scored));
+        }
+        return key;
+    }
+
+    private void removeInternal(Long bookId) {
+        String[] keys = keysByBook.remove(bookId);
+        if (keys == null) return;
+        removeKey(keys[0], true);
+        removeKey(keys[1], false);
+    }
+
+    private void removeKey(String key, boolean title) {
+        if (key == null) return;
+        Term term = terms.get(key);
+        if (term == null) return;
+        if (title) term.titleRefs--;
+        else term.authorRefs--;
+        if (term.titleRefs <= 0 && term.authorRefs <= 0) terms.remove(key);
+        // 得分下降的词条可能被区间内其它词条超过：只重新计算它所在的 top-K
+        long now = System.currentTimeMillis();
+        for (int len = 1; len <= key.length(); len++) {
+            String prefix = key.substring(0, len);
+            TopK top = topByPrefix.get(prefix);
+            if (top != null && top.contains(term)) topByPrefix.put(prefix, computeTop(prefix, now));
+        }
+    }
+
+    private static String display(String text) {
+        if (text == null) return null;
+        String trimmed = text.trim().replaceAll("\\s+", " ");
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static final class Term {
+        final String key;
+        final String display;
+        int titleRefs;
+        int authorRefs;
+
+        Term(String key, String display) {
+            this.key = key;
+            this.display = display;
+        }
+    }
+
+    /**
+     * 某个前缀的 top-K，按得分降序；创建后不再修改
+     */
+    private static final class TopK {
+        final Scored[] entries;
+        final long computedAt;
+
+        TopK(Scored[] entries, long computedAt) {
+            this.entries = entries;
+            this.computedAt = computedAt;
+        }
+
+        boolean contains(Term term) {
+            for (Scored entry : entries) {
+                if (entry.term == term) return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return 并入（或更新）一个得分上升的词条后的 top-K
+         */
+        TopK with(Scored scored) {
+            List<Scored> list = new ArrayList<>(entries.length + 1);
+            for (Scored entry : entries) {
+                if (entry.term != scored.term) list.add(entry);
+            }
+            list.add(scored);
+            Scored[] sorted = list.toArray(new Scored[0]);
+            Arrays.sort(sorted, Collections.reverseOrder());
+            return new TopK(sorted.length > MAX_SUGGESTIONS ? Arrays.copyOf(sorted, MAX_SUGGESTIONS) : sorted, computedAt);
+        }
+    }
+
+    private static final class Scored implements Comparable<Scored> {
+        final Term term;
+        final int frequency;
+
+        Scored(Term term, int frequency) {
+            this.term = term;
+            this.frequency = frequency;
+        }
+
+        // 升序：频率低、关联书籍少、文本长的排在前面（先被堆淘汰）
+        @Override
+        public int compareTo(Scored o) {
+            if (frequency != o.frequency) return Integer.compare(frequency, o.frequency);
+            int refs = term.titleRefs + term.authorRefs;
+            int otherRefs = o.term.titleRefs + o.term.authorRefs;
+            if (refs != otherRefs) return Integer.compare(refs, otherRefs);
+            if (term.key.length() != o.term.key.length()) return Integer.compare(o.term.key.length(), term.key.length());
+            return o.term.key.compareTo(term.key);
+        }
+    }
+}
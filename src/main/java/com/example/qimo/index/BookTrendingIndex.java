@@ -0,0 +1,240 @@
+package com.example.qimo.index;
+
+import com.example.qimo.entity.Book;
+import com.example.qimo.support.LongLongHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 热门书籍排行：按时间衰减的热度分数维护全站和各分类的前 K 名。
+ * 分数使用前向衰减（forward decay）：t 时刻权重为 w 的事件记为 w·e^{λ(t-L)}（L 为基准时刻），
+ * 任意时刻各书分数同乘 e^{-λ(now-L)} 即为衰减后的分数，因此排序不随时间变化，记录事件时只需更新一本书，
+ * 不用定期衰减全部分数。分数只增不减，每个范围只保留有界的前 K 名集合：书籍分数增加后超过集合中的最低分时才进入。
+ * 基准时刻过久时整体换算到当前时刻，避免指数溢出。
+ */
+@Component
+public class BookTrendingIndex implements BookIndex {
+
+    private static final long NO_CATEGORY = 0L;
+    // 指数超过该值时换算基准时刻（e^50 ≈ 5e21，远低于 double 的上限）
+    private static final double REBASE_EXPONENT = 50;
+
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        int c = Double.compare(b.score, a.score);
+        return c != 0 ? c : Long.compare(a.bookId, b.bookId);
+    };
+
+    // 每毫秒的衰减率 λ = ln2 / 半衰期
+    private final double decayPerMs;
+    private final int capacity;
+    // 书籍ID -> 分类ID，记录事件时确定书籍所属的分类排行
+    private final LongLongHashMap categories = new LongLongHashMap(1 << 16);
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> overall = new TreeSet<>(ORDER);
+    private final Map<Long, TreeSet<Entry>> byCategory = new HashMap<>();
+    private long landmark = System.currentTimeMillis();
+    // 排行变化的次数，供页面缓存判断是否需要刷新
+    private long version;
+    private volatile boolean ready;
+
+    public BookTrendingIndex(@Value("${qimo.trending.half-life-hours:24}") double halfLifeHours,
+                             @Value("${qimo.trending.capacity:20}") int capacity) {
+        this.decayPerMs = Math.log(2) / (halfLifeHours * 3_600_000d);
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void index(Book book) {
+        if (book == null || book.getId() == null) return;
+        long categoryId = book.getCategoryId() != null ? book.getCategoryId() : NO_CATEGORY;
+        categories.put(book.getId(), categoryId, NO_CATEGORY);
+        Entry entry = entries.get(book.getId());
+        if (entry == null || entry.categoryId == categoryId) return;
+        // 分类变化：从原分类的排行移出（空位由其余书籍补上），再参与新分类的排行
+        long oldCategory = entry.categoryId;
+        TreeSet<Entry> oldTop = byCategory.get(oldCategory);
+        entry.categoryId = categoryId;
+        if (oldTop != null && oldTop.remove(entry)) {
+            rebuild(oldTop, oldCategory);
+        }
+        offerTo(categoryTop(categoryId), entry);
+        version++;
+    }
+
+    @Override
+    public synchronized void remove(Long bookId) {
+        if (bookId == null) return;
+        categories.remove(bookId, NO_CATEGORY);
+        Entry entry = entries.remove(bookId);
+        if (entry == null) return;
+        if (overall.remove(entry)) {
+            rebuild(overall, null);
+        }
+        TreeSet<Entry> top = byCategory.get(entry.categoryId);
+        if (top != null && top.remove(entry)) {
+            rebuild(top, entry.categoryId);
+        }
+        version++;
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 记录一次热度事件
+     * @param bookId 书籍ID
+     * @param weight 事件权重
+     * @param timeMillis 事件时间
+     */
+    public synchronized void add(long bookId, double weight, long timeMillis) {
+        addInternal(bookId, weight, timeMillis, true);
+    }
+
+    /**
+     * 载入检查点中的分数（不标记为待写入）
+     * @param score scoredAt 时刻的衰减后分数
+     * @param scoredAt 分数对应的时刻
+     */
+    public synchronized void restore(long bookId, double score, long scoredAt) {
+        addInternal(bookId, score, scoredAt, false);
+    }
+
+    /**
+     * 热门书籍ID，按热度从高到低
+     * @param categoryId 分类ID，为null时为全站排行
+     * @param limit 数量（不超过排行容量）
+     */
+    public synchronized List<Long> top(Long categoryId, int limit) {
+        TreeSet<Entry> top = categoryId == null ? overall : byCategory.get(categoryId);
+        if (top == null) return new ArrayList<>();
+        List<Long> ids = new ArrayList<>(Math.min(limit, top.size()));
+        for (Entry entry : top) {
+            if (ids.size() >= limit) break;
+            ids.add(entry.bookId);
+        }
+        return ids;
+    }
+
+    /**
+     * 取出上次检查点之后变化过的分数
+     * @param now 检查点时刻
+     * @return {书籍ID, now 时刻的衰减后分数}
+     */
+    public synchronized List<Object[]> takeDirty(long now) {
+        double decay = Math.exp(-decayPerMs * (now - landmark));
+        List<Object[]> rows = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (!entry.dirty) continue;
+            entry.dirty = false;
+            rows.add(new Object[]{entry.bookId, entry.score * decay});
+        }
+        return rows;
+    }
+
+    /**
+     * 检查点写入失败时重新标记为待写入
+     */
+    public synchronized void markDirty(Collection<Long> bookIds) {
+        for (Long bookId : bookIds) {
+            Entry entry = entries.get(bookId);
+            if (entry != null) entry.dirty = true;
+        }
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    private void addInternal(long bookId, double weight, long timeMillis, boolean dirty) {
+        if (weight <= 0) return;
+        if (decayPerMs * (timeMillis - landmark) > REBASE_EXPONENT) {
+            rebase(timeMillis);
+        }
+        Entry entry = entries.get(bookId);
+        if (entry == null) {
+            entry = new Entry(bookId, categories.get(bookId, NO_CATEGORY));
+            entries.put(bookId, entry);
+        } else {
+            // 修改分数前先从有序集合中取出
+            overall.remove(entry);
+            TreeSet<Entry> top = byCategory.get(entry.categoryId);
+            if (top != null) top.remove(entry);
+        }
+        entry.score += weight * Math.exp(decayPerMs * (timeMillis - landmark));
+        entry.dirty |= dirty;
+        offerTo(overall, entry);
+        offerTo(categoryTop(entry.categoryId), entry);
+        version++;
+    }
+
+    /**
+     * 把全部分数换算到新的基准时刻；换算可能使相近的分数变得相等，因此重建各个排行
+     */
+    private void rebase(long newLandmark) {
+        double factor = Math.exp(-decayPerMs * (newLandmark - landmark));
+        for (Entry entry : entries.values()) {
+            entry.score *= factor;
+        }
+        landmark = newLandmark;
+        rebuild(overall, null);
+        for (Map.Entry<Long, TreeSet<Entry>> e : byCategory.entrySet()) {
+            rebuild(e.getValue(), e.getKey());
+        }
+    }
+
+    /**
+     * 重新从全部分数中选出某个范围的前 K 名（书籍删除、分类变化等少见操作后使用）
+     */
+    private void rebuild(TreeSet<Entry> top, Long categoryId) {
+        top.clear();
+        for (Entry entry : entries.values()) {
+            if (categoryId == null || entry.categoryId == categoryId) {
+                offerTo(top, entry);
+            }
+        }
+    }
+
+    private TreeSet<Entry> categoryTop(long categoryId) {
+        if (categoryId == NO_CATEGORY) return null;
+        return byCategory.computeIfAbsent(categoryId, k -> new TreeSet<>(ORDER));
+    }
+
+    private void offerTo(TreeSet<Entry> top, Entry entry) {
+        if (top == null) return;
+        if (top.size() < capacity) {
+            top.add(entry);
+        } else if (ORDER.compare(entry, top.last()) < 0) {
+            top.pollLast();
+            top.add(entry);
+        }
+    }
+
+    private static final class Entry {
+        final long bookId;
+        long categoryId;
+        // 以基准时刻为准的前向衰减分数
+        double score;
+        // 上次检查点之后是否变化过
+        boolean dirty;
+
+        Entry(long bookId, long categoryId) {
+            this.bookId = bookId;
+            this.categoryId = categoryId;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.qimo.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * 压缩的序号位图（Roaring 位图的简化实现）。
+ * 序号按高 16 位分块，每块 65536 个序号：块内元素不超过 4096 个时存为有序 char 数组，超过时存为 1024 个 long 的位图，
+ * 内存与元素个数成正比，稀疏的取值（如小出版社）只占几个字节。
+ * 求交、求并返回新位图，不修改参与运算的位图，结果可能与之共享块，调用方不应修改运算结果。非线程安全。
+ */
+final class OrdinalBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final Container[] NO_CONTAINERS = new Container[0];
+
+    // 下标为序号的高 16 位
+    private Container[] containers;
+    private int cardinality;
+
+    OrdinalBitmap() {
+        this(NO_CONTAINERS, 0);
+    }
+
+    private OrdinalBitmap(Container[] containers, int cardinality) {
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    void add(int ord) {
+        int key = ord >>> 16;
+        if (key >= containers.length) containers = Arrays.copyOf(containers, key + 1);
+        Container c = containers[key];
+        if (c == null) c = new ArrayContainer();
+        int before = c.cardinality();
+        containers[key] = c.add((char) ord);
+        cardinality += containers[key].cardinality() - before;
+    }
+
+    void remove(int ord) {
+        int key = ord >>> 16;
+        if (key >= containers.length || containers[key] == null) return;
+        Container c = containers[key];
+        int before = c.cardinality();
+        c = c.remove((char) ord);
+        cardinality -= before - (c != null ? c.cardinality() : 0);
+        containers[key] = c;
+    }
+
+    /**
+     * 按序号升序遍历
+     */
+    void forEach(IntConsumer action) {
+        for (int key = 0; key < containers.length; key++) {
+            if (containers[key] != null) containers[key].forEach(key << 16, action);
+        }
+    }
+
+    static OrdinalBitmap and(OrdinalBitmap a, OrdinalBitmap b) {
+        int n = Math.min(a.containers.length, b.containers.length);
+        Container[] result = new Container[n];
+        int total = 0;
+        for (int key = 0; key < n; key++) {
+            Container x = a.containers[key];
+            Container y = b.containers[key];
+            if (x == null || y == null) continue;
+            Container c = x.and(y);
+            if (c != null) {
+                result[key] = c;
+                total += c.cardinality();
+            }
+        }
+        return new OrdinalBitmap(result, total);
+    }
+
+    static int andCardinality(OrdinalBitmap a, OrdinalBitmap b) {
+        int n = Math.min(a.containers.length, b.containers.length);
+        int total = 0;
+        for (int key = 0; key < n; key++) {
+            Container x = a.containers[key];
+            Container y = b.containers[key];
+            if (x != null && y != null) total += x.andCardinality(y);
+        }
+        return total;
+    }
+
+    static OrdinalBitmap or(OrdinalBitmap a, OrdinalBitmap b) {
+        int n = Math.max(a.containers.length, b.containers.length);
+        Container[] result = new Container[n];
+        int total = 0;
+        for (int key = 0; key < n; key++) {
+            Container x = key < a.containers.length ? a.containers[key] : null;
+            Container y = key < b.containers.length ? b.containers[key] : null;
+            Container c = x == null ? y : y == null ? x : x.or(y);
+            if (c != null) {
+                result[key] = c;
+                total += c.cardinality();
+            }
+        }
+        return new OrdinalBitmap(result, total);
+    }
+
+    private interface Container {
+        int cardinality();
+
+        /** @return 加入后的块（可能转换为位图块） */
+        Container add(char low);
+
+        /** @return 移除后的块，为空时返回 null */
+        Container remove(char low);
+
+        boolean contains(char low);
+
+        /** @return 新的块，为空时返回 null */
+        Container and(Container other);
+
+        int andCardinality(Container other);
+
+        Container or(Container other);
+
+        void forEach(int base, IntConsumer action);
+    }
+
+    private static final class ArrayContainer implements Container {
+        char[] values;
+        int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        public int cardinality() {
+            return size;
+        }
+
+        @Override
+        public Container add(char low) {
+            int i = Arrays.binarySearch(values, 0, size, low);
+            if (i >= 0) return this;
+            if (size == ARRAY_MAX) {
+                BitmapContainer bitmap = BitmapContainer.of(this);
+                return bitmap.add(low);
+            }
+            i = -i - 1;
+            if (size == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = low;
+            size++;
+            return this;
+        }
+
+        @Override
+        public Container remove(char low) {
+            int i = Arrays.binarySearch(values, 0, size, low);
+            if (i < 0) return this;
+            System.arraycopy(values, i + 1, values, i, size - i - 1);
+            size--;
+            return size == 0 ? null : this;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+
+        @Override
+        public Container and(Container other) {
+            char[] out = new char[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (other.contains(values[i])) out[n++] = values[i];
+            }
+            return n == 0 ? null : new ArrayContainer(out, n);
+        }
+
+        @Override
+        public int andCardinality(Container other) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (other.contains(values[i])) n++;
+            }
+            return n;
+        }
+
+        @Override
+        public Container or(Container other) {
+            if (other instanceof BitmapContainer) return other.or(this);
+            ArrayContainer o = (ArrayContainer) other;
+            if (size + o.size > ARRAY_MAX) return BitmapContainer.of(this).or(o);
+            char[] out = new char[size + o.size];
+            int i = 0, j = 0, n = 0;
+            while (i < size || j < o.size) {
+                if (j == o.size || (i < size && values[i] < o.values[j])) {
+                    out[n++] = values[i++];
+                } else if (i == size || o.values[j] < values[i]) {
+                    out[n++] = o.values[j++];
+                } else {
+                    out[n++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+    }
+
+    private static final class BitmapContainer implements Container {
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapContainer of(ArrayContainer array) {
+            long[] words = new long[1024];
+            for (int i = 0; i < array.size; i++) {
+                char v = array.values[i];
+                words[v >>> 6] |= 1L << v;
+            }
+            return new BitmapContainer(words, array.size);
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container add(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Container remove(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) return this;
+            words[low >>> 6] &= ~bit;
+            cardinality--;
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            long[] o = ((BitmapContainer) other).words;
+            long[] out = new long[1024];
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                out[i] = words[i] & o[i];
+                n += Long.bitCount(out[i]);
+            }
+            if (n == 0) return null;
+            BitmapContainer result = new BitmapContainer(out, n);
+            return n <= ARRAY_MAX ? result.toArray() : result;
+        }
+
+        @Override
+        public int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) return other.andCardinality(this);
+            long[] o = ((BitmapContainer) other).words;
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                n += Long.bitCount(words[i] & o[i]);
+            }
+            return n;
+        }
+
+        @Override
+        public Container or(Container other) {
+            long[] out = words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer a = (ArrayContainer) other;
+                for (int i = 0; i < a.size; i++) {
+                    char v = a.values[i];
+                    out[v >>> 6] |= 1L << v;
+                }
+            } else {
+                long[] o = ((BitmapContainer) other).words;
+                for (int i = 0; i < 1024; i++) out[i] |= o[i];
+            }
+            int n = 0;
+            for (long w : out) n += Long.bitCount(w);
+            return new BitmapContainer(out, n);
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < 1024; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    action.accept(base | (i << 6) | Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    values[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+    }
+}
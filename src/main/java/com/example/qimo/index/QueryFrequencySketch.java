@@ -0,0 +1,77 @@
+package com.example.qimo.index;
+
+/**
+ * 搜索词频率的 Count-Min Sketch：固定内存（depth × width 个计数器）估计每个搜索词被搜索的次数。
+ * 采用保守更新减少高估；累计写入达到阈值后所有计数减半，使旧的热门词逐渐衰减。
+ */
+public class QueryFrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+    private final int[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param width 每行计数器数量（向上取整为2的幂）
+     */
+    public QueryFrequencySketch(int width) {
+        int w = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.counters = new int[DEPTH][w];
+        this.mask = w - 1;
+        this.sampleSize = w * 10;
+    }
+
+    /**
+     * 记录一次搜索
+     * @param key 归一化后的搜索词
+     */
+    public synchronized void increment(String key) {
+        int h = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, counters[i][index(h, i)]);
+        }
+        // 保守更新：只增加当前等于最小值的计数器
+        for (int i = 0; i < DEPTH; i++) {
+            int idx = index(h, i);
+            if (counters[i][idx] == min && min < Integer.MAX_VALUE) {
+                counters[i][idx]++;
+            }
+        }
+        if (++additions >= sampleSize) {
+            age();
+        }
+    }
+
+    /**
+     * 估计搜索次数（可能高估，不会低估衰减后的值）
+     * @param key 归一化后的搜索词
+     * @return 估计的搜索次数
+     */
+    public synchronized int estimate(String key) {
+        int h = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, counters[i][index(h, i)]);
+        }
+        return min;
+    }
+
+    private void age() {
+        for (int[] row : counters) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] >>>= 1;
+            }
+        }
+        additions >>>= 1;
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return h & mask;
+    }
+}
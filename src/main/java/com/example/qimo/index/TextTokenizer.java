@@ -0,0 +1,86 @@
+package com.example.qimo.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 简单的中英文混合分词器：
+ * 拉丁字母/数字按单词切分并转小写；连续的中日韩字符按二元组（bigram）切分，
+ * 单个孤立的中日韩字符作为一元词输出。
+ */
+public final class TextTokenizer {
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * 对文本分词（输出可能包含重复词）
+     * @param text 原始文本，可为null
+     * @param cjkUnigrams 是否对连续的中日韩字符额外输出一元词（用于书名、作者等短字段）
+     * @return 词列表
+     */
+    public static List<String> tokenize(String text, boolean cjkUnigrams) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) return tokens;
+
+        int i = 0;
+        int len = text.length();
+        while (i < len) {
+            int cp = text.codePointAt(i);
+            if (isCjk(cp)) {
+                int start = i;
+                while (i < len && isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                emitCjkRun(text.substring(start, i), cjkUnigrams, tokens);
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < len) {
+                    int c = text.codePointAt(i);
+                    if (!Character.isLetterOrDigit(c) || isCjk(c)) break;
+                    i += Character.charCount(c);
+                }
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 判断词是否为拉丁字母/数字词（可用于前缀扩展）
+     */
+    public static boolean isWordToken(String token) {
+        return !token.isEmpty() && !isCjk(token.codePointAt(0));
+    }
+
+    /**
+     * 归一化用于前缀匹配的字符串：去除首尾空白、合并连续空白并转小写
+     */
+    public static String normalize(String text) {
+        if (text == null) return "";
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static void emitCjkRun(String run, boolean unigrams, List<String> tokens) {
+        int[] cps = run.codePoints().toArray();
+        if (cps.length == 1) {
+            tokens.add(run);
+            return;
+        }
+        for (int k = 0; k < cps.length; k++) {
+            if (unigrams) tokens.add(new String(cps, k, 1));
+            if (k + 1 < cps.length) tokens.add(new String(cps, k, 2));
+        }
+    }
+
+    static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+}
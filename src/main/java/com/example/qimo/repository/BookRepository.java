@@ -1,22 +1,172 @@
 package com.example.qimo.repository;
 
+import com.example.qimo.dto.BookCard;
 import com.example.qimo.entity.Book;
-import com.example.qimo.entity.Category;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
+
+    /**
+     * 列表卡片投影：不装载 Book 实体、不关联 category、不读取完整简介
+     */
+    String CARD_SELECT = "SELECT new com.example.qimo.dto.BookCard(b.id, b.title, b.author, b.coverImage, b.descriptionExcerpt, b.createdAt, b.averageRating, b.ratingCount) FROM Book b";
+
     boolean existsByIsbn(String isbn);
     boolean existsByIsbnAndIdNot(String isbn, Long id);
-    List<Book> findByCategory(Category category);
+    List<Book> findByCategoryId(Long categoryId);
     Page<Book> findByCategoryId(Long categoryId, Pageable pageable);
+
+    /**
+     * 分页查询书籍卡片但不执行 COUNT 查询（多取一条判断是否有下一页）
+     * @param pageable 分页参数
+     * @return 书籍卡片切片
+     */
+    @Query(CARD_SELECT)
+    Slice<BookCard> findCardsBy(Pageable pageable);
+
+    /**
+     * 按分类分页查询书籍卡片但不执行 COUNT 查询
+     * @param categoryId 分类ID
+     * @param pageable 分页参数
+     * @return 书籍卡片切片
+     */
+    @Query(CARD_SELECT + " WHERE b.categoryId = :categoryId")
+    Slice<BookCard> findCardsByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    /**
+     * 按平均评分从高到低分页查询书籍卡片（未评分的排在最后），不执行 COUNT 查询。
+     * 排序固定在语句中以匹配 idx_books_rating 索引，pageable 不能带排序
+     */
+    @Query(CARD_SELECT + " ORDER BY b.averageRating DESC, b.ratingCount DESC, b.id DESC")
+    Slice<BookCard> findCardsOrderByRating(Pageable pageable);
+
+    /**
+     * 按分类查询并按平均评分从高到低排序（使用 idx_books_category_rating 索引），pageable 不能带排序
+     */
+    @Query(CARD_SELECT + " WHERE b.categoryId = :categoryId ORDER BY b.averageRating DESC, b.ratingCount DESC, b.id DESC")
+    Slice<BookCard> findCardsByCategoryIdOrderByRating(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    /**
+     * 按多选筛选条件分页查询书籍卡片（分面索引未就绪时的降级查询）。
+     * 各 any* 参数为 false 时对应维度不筛选，此时集合参数只需传入一个占位值。
+     */
+    @Query(value = CARD_SELECT + " WHERE (:anyCategory = false OR b.categoryId IN :categoryIds)"
+                 + " AND (:anyYear = false OR b.year IN :years) AND (:anyPublisher = false OR b.publisher IN :publishers)",
+           countQuery = "SELECT COUNT(b) FROM Book b WHERE (:anyCategory = false OR b.categoryId IN :categoryIds)"
+                 + " AND (:anyYear = false OR b.year IN :years) AND (:anyPublisher = false OR b.publisher IN :publishers)")
+    Page<BookCard> findCardsByFacets(@Param("anyCategory") boolean anyCategory, @Param("categoryIds") Collection<Long> categoryIds,
+                                     @Param("anyYear") boolean anyYear, @Param("years") Collection<Integer> years,
+                                     @Param("anyPublisher") boolean anyPublisher, @Param("publishers") Collection<String> publishers,
+                                     Pageable pageable);
+
+    /**
+     * 按ID批量查询书籍卡片（顺序不保证）
+     */
+    @Query(CARD_SELECT + " WHERE b.id IN :ids")
+    List<BookCard> findCardsByIdIn(@Param("ids") Collection<Long> ids);
+
+    long countByCategoryId(Long categoryId);
+
+    /**
+     * 查询书籍的最后修改时间（用于条件 GET，不装载实体）
+     * @param id 书籍ID
+     * @return 最后修改时间，书籍不存在时为空
+     */
+    @Query("SELECT COALESCE(b.updatedAt, b.createdAt) FROM Book b WHERE b.id = :id")
+    Optional<LocalDateTime> findLastModifiedById(@Param("id") Long id);
+
+    /**
+     * 更新书籍的修改时间（页面内容变化但书籍字段未变时调用，如封面缩略图生成后），使详情页的条件 GET 失效
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Book b SET b.updatedAt = :now WHERE b.id = :id")
+    int touch(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * 批量更新书籍的修改时间
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Book b SET b.updatedAt = :now WHERE b.id IN :ids")
+    int touchAll(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 按ID升序分批查询ID区间内有封面的书籍（补齐缩略图用）
+     * @param afterId 上一批最后的ID（不含）
+     * @param maxId 区间上界（含）
+     * @return 每行为 [id, coverImage]
+     */
+    @Query("SELECT b.id, b.coverImage FROM Book b WHERE b.id > :afterId AND b.id <= :maxId "
+         + "AND b.coverImage IS NOT NULL AND b.coverImage <> '' ORDER BY b.id")
+    List<Object[]> findCoversBetween(@Param("afterId") Long afterId, @Param("maxId") Long maxId, Pageable pageable);
+
+    /**
+     * 查询书籍的收藏数（用于条件 GET，不装载实体）
+     */
+    @Query("SELECT b.favoriteCount FROM Book b WHERE b.id = :id")
+    Optional<Integer> findFavoriteCountById(@Param("id") Long id);
+
+    /**
+     * 原子增减书籍的评论数
+     * @param id 书籍ID
+     * @param delta 增量，可为负
+     * @return 更新的行数
+     */
+    @Modifying
+    @Query("UPDATE Book b SET b.commentCount = b.commentCount + :delta WHERE b.id = :id")
+    int adjustCommentCount(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * 原子增减书籍的收藏数
+     * @param id 书籍ID
+     * @param delta 增量，可为负
+     * @return 更新的行数
+     */
+    @Modifying
+    @Query("UPDATE Book b SET b.favoriteCount = b.favoriteCount + :delta WHERE b.id = :id")
+    int adjustFavoriteCount(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * 锁定书籍行（评分写入前调用，同一本书的评分修改依次执行）
+     * @return 书籍ID，书籍不存在时为空
+     */
+    @Query(value = "SELECT id FROM books WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockById(@Param("id") Long id);
+
+    /**
+     * 按一条评分的变化增量更新书籍的评分汇总（评分数、总分、各分值人数、平均分）。
+     * 分值为0表示没有评分：oldScore=0 为新增评分，newScore=0 为删除评分。
+     * MySQL 单表 UPDATE 的赋值按从左到右的顺序执行，计算平均分时使用的是本语句更新后的评分数和总分。
+     * 同时更新书籍的修改时间，详情页的条件 GET 按单本书失效
+     */
+    @Modifying
+    @Query(value = "UPDATE books SET rating_count = rating_count + (:newScore > 0) - (:oldScore > 0), "
+            + "rating_sum = rating_sum + :newScore - :oldScore, "
+            + "rating_1 = rating_1 + (:newScore = 1) - (:oldScore = 1), "
+            + "rating_2 = rating_2 + (:newScore = 2) - (:oldScore = 2), "
+            + "rating_3 = rating_3 + (:newScore = 3) - (:oldScore = 3), "
+            + "rating_4 = rating_4 + (:newScore = 4) - (:oldScore = 4), "
+            + "rating_5 = rating_5 + (:newScore = 5) - (:oldScore = 5), "
+            + "average_rating = IF(rating_count > 0, rating_sum / rating_count, NULL), "
+            + "updated_at = :now "
+            + "WHERE id = :id", nativeQuery = true)
+    int applyRatingChange(@Param("id") Long id, @Param("oldScore") int oldScore, @Param("newScore") int newScore,
+                          @Param("now") LocalDateTime now);
     
     /**
      * 根据书名关键词模糊搜索书籍（不区分大小写）
@@ -33,8 +183,9 @@ public interface BookRepository extends JpaRepository<Book, Long> {
      * @param pageable 分页参数
      * @return 符合条件的书籍分页对象
      */
-    @Query("SELECT b FROM Book b WHERE (b.title LIKE %:keyword% OR b.author LIKE %:keyword%) AND b.category.id = :categoryId")
-    Page<Book> findByTitleContainingOrAuthorContainingAndCategoryId(@Param("keyword") String keyword, @Param("categoryId") Long categoryId, Pageable pageable);
+    @Query(value = CARD_SELECT + " WHERE (b.title LIKE %:keyword% OR b.author LIKE %:keyword%) AND b.categoryId = :categoryId",
+           countQuery = "SELECT COUNT(b) FROM Book b WHERE (b.title LIKE %:keyword% OR b.author LIKE %:keyword%) AND b.categoryId = :categoryId")
+    Page<BookCard> findByTitleContainingOrAuthorContainingAndCategoryId(@Param("keyword") String keyword, @Param("categoryId") Long categoryId, Pageable pageable);
     
     /**
      * 根据书名或作者关键词搜索书籍
@@ -42,6 +193,32 @@ public interface BookRepository extends JpaRepository<Book, Long> {
      * @param pageable 分页参数
      * @return 符合条件的书籍分页对象
      */
-    @Query("SELECT b FROM Book b WHERE b.title LIKE %:keyword% OR b.author LIKE %:keyword%")
-    Page<Book> findByTitleContainingOrAuthorContaining(@Param("keyword") String keyword, Pageable pageable);
-}
\ No newline at end of file
+    @Query(value = CARD_SELECT + " WHERE b.title LIKE %:keyword% OR b.author LIKE %:keyword%",
+           countQuery = "SELECT COUNT(b) FROM Book b WHERE b.title LIKE %:keyword% OR b.author LIKE %:keyword%")
+    Page<BookCard> findByTitleContainingOrAuthorContaining(@Param("keyword") String keyword, Pageable pageable);
+
+    /**
+     * 游标分页：第一页（按创建时间、ID倒序）
+     * @param categoryId 分类ID，为null时不过滤
+     * @param pageable 只使用其中的 pageSize 作为 LIMIT
+     * @return 书籍卡片列表
+     */
+    @Query(CARD_SELECT + " WHERE (:categoryId IS NULL OR b.categoryId = :categoryId) ORDER BY b.createdAt DESC, b.id DESC")
+    List<BookCard> findKeysetFirst(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    /**
+     * 游标分页：游标之后（更早）的书籍，按创建时间、ID倒序
+     */
+    @Query(CARD_SELECT + " WHERE (:categoryId IS NULL OR b.categoryId = :categoryId) "
+         + "AND (b.createdAt < :createdAt OR (b.createdAt = :createdAt AND b.id < :id)) ORDER BY b.createdAt DESC, b.id DESC")
+    List<BookCard> findKeysetAfter(@Param("categoryId") Long categoryId, @Param("createdAt") LocalDateTime createdAt,
+                               @Param("id") Long id, Pageable pageable);
+
+    /**
+     * 游标分页：游标之前（更新）的书籍，按创建时间、ID正序（调用方需反转）
+     */
+    @Query(CARD_SELECT + " WHERE (:categoryId IS NULL OR b.categoryId = :categoryId) "
+         + "AND (b.createdAt > :createdAt OR (b.createdAt = :createdAt AND b.id > :id)) ORDER BY b.createdAt ASC, b.id ASC")
+    List<BookCard> findKeysetBefore(@Param("categoryId") Long categoryId, @Param("createdAt") LocalDateTime createdAt,
+                                @Param("id") Long id, Pageable pageable);
+}
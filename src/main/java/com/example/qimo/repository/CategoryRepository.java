@@ -13,6 +13,6 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     boolean existsByName(String name);
     List<Category> findAllByOrderByNameAsc();
     
-    @Query("SELECT COUNT(b) FROM Book b WHERE b.category.id = :categoryId")
+    @Query("SELECT COUNT(b) FROM Book b WHERE b.categoryId = :categoryId")
     long countByBooksCategoryId(@Param("categoryId") Long categoryId);
 }
\ No newline at end of file
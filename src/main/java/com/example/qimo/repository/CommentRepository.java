@@ -1,8 +1,15 @@
 package com.example.qimo.repository;
 
+import com.example.qimo.dto.CommentNode;
+import com.example.qimo.dto.CommentRef;
 import com.example.qimo.entity.Comment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,36 +17,158 @@ import java.util.Optional;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
+
+    // 评论区渲染使用的投影查询（只取渲染需要的列，点赞数与回复数读取冗余计数列）
+    String NODE_SELECT = "SELECT new com.example.qimo.dto.CommentNode(c.id, p.id, c.path, c.depth, c.content, c.createdAt, u.username, c.likeCount, c.replyCount) "
+            + "FROM Comment c JOIN c.user u LEFT JOIN c.parent p ";
+    String ROOTS_WHERE = "WHERE c.book.id = :bookId AND c.parent IS NULL AND c.deleted = false ";
+    // 已删除（墓碑）的评论及其全部后代在后台清理前对读者不可见：后代由调用方按 findDeletedPaths 在内存中过滤
+    String VISIBLE = "c.deleted = false ";
+    String ROOTS_COUNT = "SELECT COUNT(c) FROM Comment c " + ROOTS_WHERE;
     
     /**
      * 根据书籍ID查询评论，并按创建时间降序排序
      * @param bookId 书籍ID
      * @return 评论列表
      */
-    @EntityGraph(attributePaths = {"user", "likedBy"})
-    List<Comment> findByBookIdOrderByCreatedAtDesc(Long bookId);
+    @EntityGraph(attributePaths = {"user"})
+    List<Comment> findByBookIdAndDeletedFalseOrderByCreatedAtDesc(Long bookId);
     
     /**
-     * 查询主评论（parent为null的评论）
+     * 分页查询主评论：最新在前
+     */
+    @Query(value = NODE_SELECT + ROOTS_WHERE + "ORDER BY c.createdAt DESC, c.id DESC", countQuery = ROOTS_COUNT)
+    Page<CommentNode> findRootsNewest(@Param("bookId") Long bookId, Pageable pageable);
+
+    /**
+     * 分页查询主评论：最早在前
+     */
+    @Query(value = NODE_SELECT + ROOTS_WHERE + "ORDER BY c.createdAt ASC, c.id ASC", countQuery = ROOTS_COUNT)
+    Page<CommentNode> findRootsOldest(@Param("bookId") Long bookId, Pageable pageable);
+
+    /**
+     * 分页查询主评论：点赞最多在前
+     */
+    @Query(value = NODE_SELECT + ROOTS_WHERE + "ORDER BY c.likeCount DESC, c.id DESC", countQuery = ROOTS_COUNT)
+    Page<CommentNode> findRootsTop(@Param("bookId") Long bookId, Pageable pageable);
+
+    /**
+     * 按路径顺序查询某个评论串中位于游标之后的回复（有界查询，数量由 pageable 限制），已删除子树中的后代由调用方过滤
      * @param bookId 书籍ID
-     * @return 主评论列表
+     * @param prefix 评论串根评论的路径 + "%"
+     * @param after 游标（已加载的最后一条回复的路径）
      */
-    @EntityGraph(attributePaths = {"user", "likedBy", "replies.user", "replies.likedBy"})
-    List<Comment> findByBookIdAndParentIsNullOrderByCreatedAtDesc(Long bookId);
+    @Query(NODE_SELECT + "WHERE c.book.id = :bookId AND c.path LIKE :prefix AND c.path > :after AND " + VISIBLE + "ORDER BY c.path")
+    List<CommentNode> findRepliesAfter(@Param("bookId") Long bookId, @Param("prefix") String prefix,
+                                       @Param("after") String after, Pageable pageable);
+
+    /**
+     * 查询书籍下尚未清理的墓碑评论的路径，走 (book_id, path) 索引
+     * @param bookId 书籍ID
+     * @param prefix 路径前缀 + "%"，整本书时传 "%"
+     */
+    @Query("SELECT c.path FROM Comment c WHERE c.book.id = :bookId AND c.path LIKE :prefix AND c.deleted = true")
+    List<String> findDeletedPaths(@Param("bookId") Long bookId, @Param("prefix") String prefix);
+
+    /**
+     * 判断给定路径中是否有墓碑评论（用于检查回复目标是否位于已删除的子树中）
+     */
+    @Query("SELECT COUNT(c) > 0 FROM Comment c WHERE c.book.id = :bookId AND c.path IN :paths AND c.deleted = true")
+    boolean existsDeletedByPathIn(@Param("bookId") Long bookId, @Param("paths") List<String> paths);
+
+    /**
+     * 查询未删除评论的物化路径
+     */
+    @Query("SELECT c.path FROM Comment c WHERE c.id = :id AND c.book.id = :bookId AND c.deleted = false")
+    Optional<String> findPath(@Param("bookId") Long bookId, @Param("id") Long id);
     
     /**
      * 查询子评论
      * @param parentId 父评论ID
      * @return 子评论列表
      */
-    @EntityGraph(attributePaths = {"user", "likedBy"})
-    List<Comment> findByParentIdOrderByCreatedAtAsc(Long parentId);
+    @EntityGraph(attributePaths = {"user"})
+    List<Comment> findByParentIdAndDeletedFalseOrderByCreatedAtAsc(Long parentId);
     
     /**
-     * 根据ID查询评论，并预加载点赞用户集合
+     * 根据ID查询评论，并预加载作者、父评论和书籍（点赞用户集合不预加载）
      * @param id 评论ID
-     * @return 评论对象（带点赞用户集合）
+     * @return 评论对象
      */
-    @EntityGraph(attributePaths = {"user", "likedBy", "parent", "book"})
+    @EntityGraph(attributePaths = {"user", "parent", "book"})
     Optional<Comment> findById(Long id);
-}
\ No newline at end of file
+
+    /**
+     * 查询用户在指定书籍下点赞过的评论ID：按用户名唯一索引定位用户，
+     * 再经 comment_likes 的 user_id 索引取出点赞记录，只读取ID列，不装载评论和用户实体
+     * @param bookId 书籍ID
+     * @param username 用户名
+     * @return 评论ID列表
+     */
+    @Query(value = "SELECT l.comment_id FROM users u JOIN comment_likes l ON l.user_id = u.id "
+                 + "JOIN comments c ON c.id = l.comment_id WHERE u.username = :username AND c.book_id = :bookId",
+           nativeQuery = true)
+    List<Number> findLikedCommentIds(@Param("bookId") Long bookId, @Param("username") String username);
+
+    /**
+     * 查询未删除评论的定位信息（不装载实体）
+     */
+    @Query("SELECT new com.example.qimo.dto.CommentRef(c.id, c.book.id, c.path, c.depth) FROM Comment c WHERE c.id = :id AND c.deleted = false")
+    Optional<CommentRef> findRef(@Param("id") Long id);
+
+    /**
+     * 查询未删除评论所属的书籍ID（不装载实体）
+     */
+    @Query("SELECT c.book.id FROM Comment c WHERE c.id = :id AND c.deleted = false")
+    Optional<Long> findBookIdById(@Param("id") Long id);
+
+    /**
+     * 原子增减评论的点赞数
+     * @param id 评论ID
+     * @param delta 增量，可为负
+     * @return 更新的行数
+     */
+    @Modifying
+    @Query("UPDATE Comment c SET c.likeCount = c.likeCount + :delta WHERE c.id = :id")
+    int adjustLikeCount(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * 查询评论的点赞数（冗余计数列）
+     */
+    @Query("SELECT c.likeCount FROM Comment c WHERE c.id = :id")
+    Optional<Integer> findLikeCount(@Param("id") Long id);
+
+    /**
+     * 写入一条点赞记录；(comment_id, user_id) 为主键，已存在时忽略
+     * @return 新增的行数（0 或 1）
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO comment_likes (comment_id, user_id) VALUES (:commentId, :userId)", nativeQuery = true)
+    int insertLike(@Param("commentId") Long commentId, @Param("userId") Long userId);
+
+    /**
+     * 删除一条点赞记录
+     * @return 删除的行数（0 或 1）
+     */
+    @Modifying
+    @Query(value = "DELETE FROM comment_likes WHERE comment_id = :commentId AND user_id = :userId", nativeQuery = true)
+    int deleteLike(@Param("commentId") Long commentId, @Param("userId") Long userId);
+
+    /**
+     * 原子增减评论的直接回复数
+     * @param id 评论ID
+     * @param delta 增量，可为负
+     * @return 更新的行数
+     */
+    @Modifying
+    @Query("UPDATE Comment c SET c.replyCount = c.replyCount + :delta WHERE c.id = :id")
+    int adjustReplyCount(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * 把评论标记为已删除（墓碑），子树由 CommentPurgeService 在后台清理
+     * @return 更新的行数；评论不存在或已删除时为0
+     */
+    @Modifying
+    @Query("UPDATE Comment c SET c.deleted = true WHERE c.id = :id AND c.deleted = false")
+    int markDeleted(@Param("id") Long id);
+}
@@ -0,0 +1,32 @@
+package com.example.qimo.repository;
+
+import com.example.qimo.entity.Rating;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RatingRepository extends JpaRepository<Rating, Long> {
+
+    /**
+     * 查询用户对书籍的评分
+     */
+    @Query(value = "SELECT score FROM ratings WHERE user_id = :userId AND book_id = :bookId", nativeQuery = true)
+    Optional<Integer> findScore(@Param("userId") Long userId, @Param("bookId") Long bookId);
+
+    /**
+     * 写入或修改评分（按 (user_id, book_id) 唯一键）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO ratings (user_id, book_id, score, created_at, updated_at) VALUES (:userId, :bookId, :score, NOW(), NOW()) "
+            + "ON DUPLICATE KEY UPDATE score = VALUES(score), updated_at = VALUES(updated_at)", nativeQuery = true)
+    int upsert(@Param("userId") Long userId, @Param("bookId") Long bookId, @Param("score") int score);
+
+    @Modifying
+    @Query(value = "DELETE FROM ratings WHERE user_id = :userId AND book_id = :bookId", nativeQuery = true)
+    int deleteByUserIdAndBookId(@Param("userId") Long userId, @Param("bookId") Long bookId);
+}
@@ -1,7 +1,7 @@
 package com.example.qimo.repository;
 
+import com.example.qimo.dto.BookCard;
 import com.example.qimo.entity.User;
-import com.example.qimo.entity.Book;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
@@ -13,6 +13,12 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+
+    /**
+     * 按用户名查询用户ID（不装载实体）
+     */
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
     Optional<User> findByEmail(String email);
@@ -21,7 +27,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // 检查用户是否已收藏指定书籍
     boolean existsByUsernameAndFavoriteBooksId(String username, Long bookId);
     
-    // 修改后的查询：使用JOIN查询用户收藏的书籍
-    @Query("SELECT b FROM User u JOIN u.favoriteBooks b WHERE u.username = :username")
-    Page<Book> findFavoriteBooksByUsername(@Param("username") String username, Pageable pageable);
+    // 使用JOIN查询用户收藏的书籍，只投影列表卡片需要的字段
+    @Query(value = "SELECT new com.example.qimo.dto.BookCard(b.id, b.title, b.author, b.coverImage, b.descriptionExcerpt, b.createdAt, b.averageRating, b.ratingCount) "
+                 + "FROM User u JOIN u.favoriteBooks b WHERE u.username = :username",
+           countQuery = "SELECT COUNT(b) FROM User u JOIN u.favoriteBooks b WHERE u.username = :username")
+    Page<BookCard> findFavoriteBooksByUsername(@Param("username") String username, Pageable pageable);
 }
\ No newline at end of file
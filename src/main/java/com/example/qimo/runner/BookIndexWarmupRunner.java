@@ -0,0 +1,41 @@
+package com.example.qimo.runner;
+
+import com.example.qimo.index.BookIndexRegistry;
+import com.example.qimo.service.TrendingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动时预热书籍内存索引（在 DataInitRunner 修复数据之后执行）。
+ * 预热失败不影响启动，相关查询会自动降级为数据库查询。之后从检查点恢复热门书籍的分数。
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class BookIndexWarmupRunner implements CommandLineRunner {
+    private static final Logger logger = LoggerFactory.getLogger(BookIndexWarmupRunner.class);
+
+    @Autowired
+    private BookIndexRegistry bookIndexRegistry;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    @Override
+    public void run(String... args) {
+        try {
+            bookIndexRegistry.warmup();
+        } catch (Exception e) {
+            logger.error("书籍索引预热失败，搜索将降级为数据库查询", e);
+        }
+        try {
+            trendingService.restore();
+        } catch (Exception e) {
+            logger.error("恢复热门书籍分数失败，本次运行不写入检查点", e);
+        }
+    }
+}
@@ -1,30 +1,50 @@
 package com.example.qimo.runner;
 
+import com.example.qimo.cache.CategoryDictionary;
+import com.example.qimo.entity.Book;
 import com.example.qimo.entity.Category;
+import com.example.qimo.entity.Comment;
 import com.example.qimo.entity.User;
 import com.example.qimo.repository.CategoryRepository;
 import com.example.qimo.repository.UserRepository;
+import com.example.qimo.service.CounterReconciliationService;
+import com.example.qimo.support.Isbn;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 @Component
+@Order(0)
 public class DataInitRunner implements CommandLineRunner {
 
+    // 冗余计数列的一次性回填
+    private static final String COUNTER_BACKFILL = "counter-backfill";
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private CategoryDictionary categoryDictionary;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
     @Autowired
     private BCryptPasswordEncoder passwordEncoder;
 
+    @Autowired
+    private CounterReconciliationService counterReconciliationService;
+
     @Override
     public void run(String... args) throws Exception {
         // 1. 创建管理员账号（兼容旧逻辑）
@@ -54,6 +74,7 @@ public class DataInitRunner implements CommandLineRunner {
                 Category defaultCategory = new Category();
                 defaultCategory.setName("未分类");
                 categoryRepository.save(defaultCategory);
+                categoryDictionary.invalidate();
                 System.out.println("已创建默认分类：未分类");
             }
         } catch (Exception e) {
@@ -94,5 +115,188 @@ public class DataInitRunner implements CommandLineRunner {
             // 在某些环境中，books 表也可能不存在或 SQL 权限不足；捕获并打印以便后续处理
             System.out.println("尝试清理 books 表中的无效 category_id 时发生异常：" + ex.getMessage());
         }
+
+        // 4. 补齐缺失的 created_at：游标分页按 (created_at, id) 定位，NULL 值的记录将无法被翻到
+        try {
+            int updated = jdbcTemplate.update("UPDATE books SET created_at = COALESCE(updated_at, NOW()) WHERE created_at IS NULL");
+            if (updated > 0) {
+                System.out.println("已为 " + updated + " 条书籍记录补齐 created_at。");
+            }
+        } catch (Exception ex) {
+            System.out.println("补齐 books.created_at 时发生异常：" + ex.getMessage());
+        }
+    
+        // 5. 为旧数据补齐列表页使用的简介摘要（分批处理，避免一次性读取全部简介）
+        try {
+            int total = backfillDescriptionExcerpts();
+            if (total > 0) {
+                System.out.println("已为 " + total + " 条书籍记录生成简介摘要。");
+            }
+        } catch (Exception ex) {
+            System.out.println("生成 books.description_excerpt 时发生异常：" + ex.getMessage());
+        }
+
+        // 6. 为旧评论补齐物化路径：先处理根评论，再逐层处理回复，直到没有可补齐的记录
+        try {
+            int total = backfillCommentPaths();
+            if (total > 0) {
+                System.out.println("已为 " + total + " 条评论生成物化路径。");
+            }
+        } catch (Exception ex) {
+            System.out.println("生成 comments.path 时发生异常：" + ex.getMessage());
+        }
+
+        // 7. 确保 comment_likes 以 (comment_id, user_id) 为主键：点赞写入依赖主键实现幂等的 INSERT IGNORE
+        try {
+            if (ensureCommentLikesPrimaryKey()) {
+                System.out.println("已为 comment_likes 去重并添加 (comment_id, user_id) 主键。");
+            }
+        } catch (Exception ex) {
+            System.out.println("为 comment_likes 添加主键时发生异常：" + ex.getMessage());
+        }
+
+        // 8. 新增点赞数、回复数、评论数、收藏数等冗余计数列后，首次启动时回填一次；之后的偏差由定时校对任务修正
+        try {
+            if (!migrationApplied(COUNTER_BACKFILL)) {
+                int total = counterReconciliationService.reconcileAll();
+                markMigrationApplied(COUNTER_BACKFILL);
+                System.out.println("已回填冗余计数，修正 " + total + " 条记录。");
+            }
+        } catch (Exception ex) {
+            System.out.println("校对冗余计数时发生异常：" + ex.getMessage());
+        }
+
+        // 9. 热门书籍分数的检查点表（只由 TrendingService 通过 JDBC 读写）
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS book_trending (book_id BIGINT PRIMARY KEY, score DOUBLE NOT NULL, "
+                    + "scored_at BIGINT NOT NULL) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        } catch (Exception ex) {
+            System.out.println("创建 book_trending 表时发生异常：" + ex.getMessage());
+        }
+
+        // 10. ISBN 统一为规范写法（13 位数字）并添加唯一索引：同一本书的 ISBN-10 / 带连字符写法视为重复
+        try {
+            int total = canonicalizeIsbns();
+            if (total > 0) {
+                System.out.println("已将 " + total + " 条书籍记录的 ISBN 改为规范写法。");
+            }
+            if (ensureIsbnUniqueIndex()) {
+                System.out.println("已为 books.isbn 添加唯一索引。");
+            }
+        } catch (Exception ex) {
+            System.out.println("规范化 books.isbn 时发生异常：" + ex.getMessage());
+        }
+    }
+
+    /**
+     * 一次性数据迁移是否已执行（记录在 app_migrations 表中）
+     */
+    private boolean migrationApplied(String name) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS app_migrations (name VARCHAR(64) PRIMARY KEY, "
+                + "applied_at DATETIME NOT NULL) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        Integer n = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_migrations WHERE name = ?", Integer.class, name);
+        return n != null && n > 0;
+    }
+
+    private void markMigrationApplied(String name) {
+        jdbcTemplate.update("INSERT IGNORE INTO app_migrations (name, applied_at) VALUES (?, NOW())", name);
+    }
+
+    private int canonicalizeIsbns() {
+        jdbcTemplate.update("UPDATE books SET isbn = NULL WHERE TRIM(isbn) = ''");
+        // 已经是规范写法的不需要处理
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+            "SELECT id, isbn FROM books WHERE isbn IS NOT NULL AND NOT (isbn REGEXP '^[0-9]{13}$') ORDER BY id");
+        int total = 0;
+        for (Map<String, Object> row : rows) {
+            long id = ((Number) row.get("id")).longValue();
+            String raw = (String) row.get("isbn");
+            String canonical = Isbn.canonical(raw);
+            if (canonical == null) {
+                System.out.println("书籍 " + id + " 的 ISBN 格式错误，保留原值：" + raw);
+                continue;
+            }
+            Integer taken = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books WHERE isbn = ? AND id <> ?",
+                Integer.class, canonical, id);
+            if (taken != null && taken > 0) {
+                // 与已有书籍重复：清空后加的这条，唯一索引才能建立
+                System.out.println("书籍 " + id + " 的 ISBN " + raw + " 与其他书籍重复，已清空。");
+                jdbcTemplate.update("UPDATE books SET isbn = NULL WHERE id = ?", id);
+            } else {
+                jdbcTemplate.update("UPDATE books SET isbn = ? WHERE id = ?", canonical, id);
+            }
+            total++;
+        }
+        // 原本就以相同规范写法重复保存的书籍：保留ID最小的一条
+        List<Long> duplicates = jdbcTemplate.queryForList(
+            "SELECT b.id FROM books b JOIN books o ON o.isbn = b.isbn AND o.id < b.id", Long.class);
+        for (Long id : duplicates) {
+            System.out.println("书籍 " + id + " 的 ISBN 与其他书籍重复，已清空。");
+            jdbcTemplate.update("UPDATE books SET isbn = NULL WHERE id = ?", id);
+        }
+        return total + duplicates.size();
+    }
+
+    private boolean ensureIsbnUniqueIndex() {
+        Integer unique = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = 'books' AND column_name = 'isbn' AND non_unique = 0", Integer.class);
+        boolean created = unique == null || unique == 0;
+        if (created) {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX uk_books_isbn ON books (isbn)");
+        }
+        // 原有的非唯一索引已被唯一索引取代
+        Integer old = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = 'books' AND index_name = 'idx_books_isbn'", Integer.class);
+        if (old != null && old > 0) {
+            jdbcTemplate.execute("DROP INDEX idx_books_isbn ON books");
+        }
+        return created;
+    }
+
+    private boolean ensureCommentLikesPrimaryKey() {
+        Integer keys = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.table_constraints "
+                + "WHERE table_schema = DATABASE() AND table_name = 'comment_likes' AND constraint_type = 'PRIMARY KEY'", Integer.class);
+        if (keys == null || keys > 0) return false;
+        // 原地删除重复行（每组只保留一行）：每条 DELETE 单独生效，中途失败不会丢失其他点赞，重启后继续处理
+        List<Map<String, Object>> duplicates = jdbcTemplate.queryForList(
+            "SELECT comment_id, user_id, COUNT(*) AS n FROM comment_likes GROUP BY comment_id, user_id HAVING COUNT(*) > 1");
+        for (Map<String, Object> row : duplicates) {
+            long extra = ((Number) row.get("n")).longValue() - 1;
+            jdbcTemplate.update("DELETE FROM comment_likes WHERE comment_id = ? AND user_id = ? LIMIT " + extra,
+                row.get("comment_id"), row.get("user_id"));
+        }
+        jdbcTemplate.execute("ALTER TABLE comment_likes ADD PRIMARY KEY (comment_id, user_id)");
+        return true;
+    }
+
+    private int backfillCommentPaths() {
+        String segment = "LPAD(LOWER(CONV(%s.id, 10, 36)), " + Comment.PATH_SEGMENT_LENGTH + ", '0')";
+        int total = jdbcTemplate.update("UPDATE comments c SET c.path = " + String.format(segment, "c")
+                + ", c.depth = 0 WHERE c.parent_id IS NULL AND c.path IS NULL");
+        while (true) {
+            int updated = jdbcTemplate.update("UPDATE comments c JOIN comments p ON c.parent_id = p.id "
+                    + "SET c.path = CONCAT(p.path, " + String.format(segment, "c") + "), c.depth = p.depth + 1 "
+                    + "WHERE c.path IS NULL AND p.path IS NOT NULL");
+            if (updated == 0) return total;
+            total += updated;
+        }
+    }
+
+    private int backfillDescriptionExcerpts() {
+        int total = 0;
+        long lastId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, description FROM books WHERE id > ? AND description_excerpt IS NULL AND description IS NOT NULL ORDER BY id LIMIT 500",
+                lastId);
+            if (rows.isEmpty()) return total;
+            List<Object[]> args = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                lastId = ((Number) row.get("id")).longValue();
+                args.add(new Object[]{Book.excerptOf((String) row.get("description")), lastId});
+            }
+            jdbcTemplate.batchUpdate("UPDATE books SET description_excerpt = ? WHERE id = ?", args);
+            total += rows.size();
+        }
     }
-}
\ No newline at end of file
+}
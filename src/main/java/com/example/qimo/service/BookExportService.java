@@ -0,0 +1,291 @@
+package com.example.qimo.service;
+
+import com.example.qimo.cache.CategoryDictionary;
+import com.example.qimo.entity.Category;
+import com.example.qimo.support.CsvWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 书籍目录导出（CSV / JSON Lines）。
+ * 使用只进只读的 JDBC 游标逐行读取（MySQL 流式结果集），边读边写入响应输出流，
+ * 内存占用与目录大小无关；分类名称从 CategoryDictionary 解析，不关联 categories 表。
+ */
+@Service
+public class BookExportService {
+    private static final Logger logger = LoggerFactory.getLogger(BookExportService.class);
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        CSV("text/csv", ".csv"),
+        JSONL("application/x-ndjson", ".jsonl");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * @throws IllegalArgumentException 不支持的格式
+         */
+        public static Format of(String value) {
+            if (value == null || value.isEmpty()) return CSV;
+            switch (value.toLowerCase(Locale.ROOT)) {
+                case "csv": return CSV;
+                case "jsonl": case "ndjson": case "json": return JSONL;
+                default: throw new IllegalArgumentException("不支持的导出格式: " + value);
+            }
+        }
+    }
+
+    // MySQL Connector/J 只有在 fetchSize 为 Integer.MIN_VALUE 时才逐行流式读取，否则会把整个结果集读入内存
+    private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    // 每写出多少行刷新一次输出流，让客户端尽早收到数据
+    private static final int FLUSH_EVERY = 1000;
+    private static final String[] COLUMNS = {
+            "id", "title", "author", "isbn", "publisher", "year", "category_id", "category",
+            "cover_image", "description", "created_at", "updated_at"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CategoryDictionary categoryDictionary;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public BookExportService(JdbcTemplate jdbcTemplate, CategoryDictionary categoryDictionary, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.categoryDictionary = categoryDictionary;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 将符合条件的书籍按ID顺序写出到输出流（不关闭输出流）
+     * @param format 导出格式
+     * @param categoryId 分类ID，为null时不过滤
+     * @param from 创建日期下限（含），为null时不限
+     * @param to 创建日期上限（含），为null时不限
+     * @param out 输出流
+     * @return 导出的行数
+     */
+    public long export(Format format, Long categoryId, LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("开始日期不能晚于结束日期");
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new JsonRowWriter(writer);
+        rowWriter.begin();
+
+        StringBuilder sql = new StringBuilder("SELECT id, title, author, isbn, publisher, year, category_id, "
+                + "cover_image, description, created_at, updated_at FROM books WHERE 1 = 1");
+        List<Object> args = new ArrayList<>(3);
+        if (categoryId != null) {
+            sql.append(" AND category_id = ?");
+            args.add(categoryId);
+        }
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(from.atStartOfDay()));
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        }
+        sql.append(" ORDER BY id");
+
+        PreparedStatementCreator creator = con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAMING_FETCH_SIZE);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        };
+        long[] count = {0};
+        try {
+            jdbcTemplate.query(creator, rs -> {
+                try {
+                    rowWriter.write(rs);
+                    if (++count[0] % FLUSH_EVERY == 0) writer.flush();
+                } catch (IOException e) {
+                    // 客户端断开：流式结果集关闭时会把剩余的行全部读完，先取消语句让服务端停止发送，再中止读取
+                    cancel(rs);
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            logger.warn("书籍导出中止，已写出 {} 行: {}", count[0], e.getCause().getMessage());
+            throw e.getCause();
+        }
+        rowWriter.end();
+        writer.flush();
+        logger.info("书籍导出完成: format={}, rows={}", format, count[0]);
+        return count[0];
+    }
+
+    private static void cancel(ResultSet rs) {
+        try {
+            rs.getStatement().cancel();
+        } catch (SQLException e) {
+            logger.debug("取消导出查询失败: {}", e.getMessage());
+        }
+    }
+
+    private String categoryName(Long categoryId) {
+        if (categoryId == null) return null;
+        Category category = categoryDictionary.get(categoryId);
+        return category != null ? category.getName() : null;
+    }
+
+    private static Long getLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Integer getInt(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static String getDateTime(ResultSet rs, String column) throws SQLException {
+        Timestamp ts = rs.getTimestamp(column);
+        return ts != null ? ts.toLocalDateTime().toString() : null;
+    }
+
+    private interface RowWriter {
+        void begin() throws IOException;
+
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void end() throws IOException;
+    }
+
+    private final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        private final CsvWriter csv;
+
+        CsvRowWriter(Writer writer) {
+            this.writer = writer;
+            this.csv = new CsvWriter(writer);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            // UTF-8 BOM，便于 Excel 正确识别中文
+            writer.write('\uFEFF');
+            for (String column : COLUMNS) {
+                csv.field(column);
+            }
+            csv.endRecord();
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            Long categoryId = getLong(rs, "category_id");
+            csv.field(rs.getLong("id"))
+                    .field(rs.getString("title"))
+                    .field(rs.getString("author"))
+                    .field(rs.getString("isbn"))
+                    .field(rs.getString("publisher"))
+                    .field(getInt(rs, "year"))
+                    .field(categoryId)
+                    .field(categoryName(categoryId))
+                    .field(rs.getString("cover_image"))
+                    .field(rs.getString("description"))
+                    .field(getDateTime(rs, "created_at"))
+                    .field(getDateTime(rs, "updated_at"));
+            csv.endRecord();
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+
+    private final class JsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private final JsonGenerator json;
+
+        JsonRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            this.json = objectMapper.getFactory().createGenerator(writer);
+            // 输出流由调用方管理；每行后的 flush 只写入缓冲区，不逐行刷新网络
+            this.json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            // 每行一个对象，行间分隔由 write 自行写出换行
+            this.json.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            Long categoryId = getLong(rs, "category_id");
+            json.writeStartObject();
+            json.writeNumberField("id", rs.getLong("id"));
+            json.writeStringField("title", rs.getString("title"));
+            json.writeStringField("author", rs.getString("author"));
+            json.writeStringField("isbn", rs.getString("isbn"));
+            json.writeStringField("publisher", rs.getString("publisher"));
+            writeNumber("year", getInt(rs, "year"));
+            writeNumber("category_id", categoryId);
+            json.writeStringField("category", categoryName(categoryId));
+            json.writeStringField("cover_image", rs.getString("cover_image"));
+            json.writeStringField("description", rs.getString("description"));
+            json.writeStringField("created_at", getDateTime(rs, "created_at"));
+            json.writeStringField("updated_at", getDateTime(rs, "updated_at"));
+            json.writeEndObject();
+            json.flush();
+            writer.write('\n');
+        }
+
+        private void writeNumber(String name, Number value) throws IOException {
+            if (value == null) {
+                json.writeNullField(name);
+            } else {
+                json.writeNumberField(name, value.longValue());
+            }
+        }
+
+        @Override
+        public void end() throws IOException {
+            json.close();
+        }
+    }
+}
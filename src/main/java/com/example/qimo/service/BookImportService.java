@@ -0,0 +1,553 @@
+package com.example.qimo.service;
+
+import com.example.qimo.cache.CatalogVersion;
+import com.example.qimo.cache.CategoryDictionary;
+import com.example.qimo.dto.BookImportJob;
+import com.example.qimo.entity.Book;
+import com.example.qimo.entity.Category;
+import com.example.qimo.index.BookIndexRegistry;
+import com.example.qimo.index.BookIsbnIndex;
+import com.example.qimo.support.CsvReader;
+import com.example.qimo.support.Isbn;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 书籍批量导入（CSV / JSON Lines）。
+ * 上传文件先落盘，再由读线程逐行解析、校验并按批次放入有界队列，写线程按批次去重后用 JDBC 批量插入；
+ * 队列满时读线程阻塞等待（背压），整个过程不把文件或大量实体放进内存，也不使用 JPA 持久化上下文。
+ */
+@Service
+public class BookImportService {
+    private static final Logger logger = LoggerFactory.getLogger(BookImportService.class);
+
+    private static final int BATCH_SIZE = 1000;
+    // 读线程最多领先写线程的批次数
+    private static final int QUEUE_CAPACITY = 4;
+    // 保留的历史任务数
+    private static final int MAX_JOBS = 20;
+    private static final int MAX_FIELD_LENGTH = 255;
+    private static final String INSERT_SQL = "INSERT INTO books (title, author, isbn, publisher, description, description_excerpt, "
+            + "cover_image, year, category_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // JSON 行解析失败时记录错误信息的键
+    private static final String PARSE_ERROR = "_error";
+    private static final List<ImportRow> END = Collections.emptyList();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CategoryDictionary categoryDictionary;
+    private final BookIndexRegistry bookIndexRegistry;
+    private final BookIsbnIndex bookIsbnIndex;
+    private final CatalogVersion catalogVersion;
+    private final BookService bookService;
+    private final ObjectMapper objectMapper;
+    private final AtomicBoolean running = new AtomicBoolean();
+    // 一个读线程 + 一个写线程；同一时间只允许一个导入任务，读写线程都结束后才释放 running
+    private final ThreadPoolExecutor executor;
+    private final Map<String, BookImportJob> jobs = new LinkedHashMap<String, BookImportJob>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BookImportJob> eldest) {
+            return size() > MAX_JOBS;
+        }
+    };
+
+    @Autowired
+    public BookImportService(JdbcTemplate jdbcTemplate, CategoryDictionary categoryDictionary,
+                             BookIndexRegistry bookIndexRegistry, BookIsbnIndex bookIsbnIndex,
+                             CatalogVersion catalogVersion, BookService bookService, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.categoryDictionary = categoryDictionary;
+        this.bookIndexRegistry = bookIndexRegistry;
+        this.bookIsbnIndex = bookIsbnIndex;
+        this.bookService = bookService;
+        this.catalogVersion = catalogVersion;
+        this.objectMapper = objectMapper;
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "book-import-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 开始导入上传的文件（.csv 或 .jsonl/.ndjson/.json，每行一个 JSON 对象）
+     * @param file 上传的文件，CSV 第一行为表头
+     * @return 导入任务
+     * @throws IllegalArgumentException 文件为空或格式不支持
+     * @throws IllegalStateException 已有导入任务正在运行
+     */
+    public BookImportJob start(MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("请选择要导入的文件");
+        }
+        String name = file.getOriginalFilename() != null ? file.getOriginalFilename() : "";
+        String lower = name.toLowerCase(Locale.ROOT);
+        boolean csv = lower.endsWith(".csv");
+        if (!csv && !lower.endsWith(".jsonl") && !lower.endsWith(".ndjson") && !lower.endsWith(".json")) {
+            throw new IllegalArgumentException("仅支持 CSV 或 JSON Lines 文件");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("已有导入任务正在运行，请稍后再试");
+        }
+        Path temp = null;
+        try {
+            temp = Files.createTempFile("book-import-", csv ? ".csv" : ".jsonl");
+            file.transferTo(temp);
+            BookImportJob job = new BookImportJob(UUID.randomUUID().toString(), name);
+            synchronized (jobs) {
+                jobs.put(job.getId(), job);
+            }
+            Path source = temp;
+            executor.execute(() -> run(job, source, csv));
+            logger.info("Book import {} started: {}", job.getId(), name);
+            return job;
+        } catch (IOException | RuntimeException e) {
+            running.set(false);
+            if (temp != null) Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * @return 导入任务，不存在时返回null
+     */
+    public BookImportJob getJob(String id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 写线程：启动读线程后消费队列，等读线程也退出后再清理临时文件并释放 running
+     */
+    private void run(BookImportJob job, Path file, boolean csv) {
+        BlockingQueue<List<ImportRow>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Future<?> reader = null;
+        try {
+            reader = executor.submit(() -> read(job, file, csv, queue));
+            write(job, queue);
+        } catch (RejectedExecutionException e) {
+            logger.error("Book import {} could not start its reader", job.getId(), e);
+            job.fail("导入线程不可用，请稍后再试");
+        } finally {
+            // 任务失败时读线程在一秒内发现并退出
+            if (reader != null) awaitReader(reader);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to delete import temp file {}", file, e);
+            }
+            running.set(false);
+        }
+    }
+
+    private static void awaitReader(Future<?> reader) {
+        try {
+            reader.get();
+        } catch (InterruptedException e) {
+            // 应用关闭：一并中断读线程
+            reader.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignore) {
+            // 读线程自行记录错误
+        }
+    }
+
+    private void read(BookImportJob job, Path file, boolean csv, BlockingQueue<List<ImportRow>> queue) {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Iterator<Map<String, String>> rows = csv ? csvRows(in) : jsonRows(in);
+            List<ImportRow> batch = new ArrayList<>(BATCH_SIZE);
+            long line = csv ? 1 : 0;
+            while (rows.hasNext() && !job.isFinished()) {
+                Map<String, String> fields = rows.next();
+                line++;
+                if (fields == null) continue;
+                job.rowRead();
+                String error = validate(fields);
+                if (error != null) {
+                    job.rowInvalid(line, error);
+                    continue;
+                }
+                batch.add(new ImportRow(line, toBook(fields)));
+                if (batch.size() >= BATCH_SIZE) {
+                    if (!put(job, queue, batch)) return;
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty() && !put(job, queue, batch)) return;
+            put(job, queue, END);
+        } catch (Exception e) {
+            logger.error("Book import {} failed while reading", job.getId(), e);
+            job.fail("读取文件失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 放入队列；队列满时等待写线程消费，任务已结束（失败）时放弃
+     */
+    private boolean put(BookImportJob job, BlockingQueue<List<ImportRow>> queue, List<ImportRow> batch) throws InterruptedException {
+        while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+            if (job.isFinished()) return false;
+        }
+        return true;
+    }
+
+    private void write(BookImportJob job, BlockingQueue<List<ImportRow>> queue) {
+        // 本次插入的ID区间（自增ID按插入顺序递增），结束后统一补齐封面缩略图
+        long firstId = Long.MAX_VALUE;
+        long lastId = 0;
+        try {
+            while (!job.isFinished()) {
+                List<ImportRow> batch = queue.poll(1, TimeUnit.SECONDS);
+                if (batch == null) continue;
+                if (batch == END) {
+                    job.complete();
+                    break;
+                }
+                for (Book book : writeBatch(job, batch)) {
+                    firstId = Math.min(firstId, book.getId());
+                    lastId = Math.max(lastId, book.getId());
+                }
+            }
+            logger.info("Book import {} finished: status={}, read={}, inserted={}, duplicates={}, invalid={}",
+                    job.getId(), job.getStatus(), job.getRowsRead(), job.getInserted(), job.getDuplicates(), job.getInvalid());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail("导入被中断");
+        } catch (Exception e) {
+            logger.error("Book import {} failed while writing", job.getId(), e);
+            job.fail("写入数据库失败：" + e.getMessage());
+        } finally {
+            // 失败前已插入的书籍同样需要缩略图
+            if (lastId > 0) bookService.backfillCoverThumbnails(firstId, lastId);
+        }
+    }
+
+    /**
+     * @return 插入成功的书籍
+     */
+    private List<Book> writeBatch(BookImportJob job, List<ImportRow> batch) {
+        // 1. 批内按 ISBN 去重
+        Map<String, ImportRow> byIsbn = new HashMap<>();
+        List<ImportRow> rows = new ArrayList<>(batch.size());
+        for (ImportRow row : batch) {
+            String isbn = row.book.getIsbn();
+            if (isbn != null && byIsbn.putIfAbsent(isbn, row) != null) {
+                job.addDuplicates(1);
+                continue;
+            }
+            rows.add(row);
+        }
+        // 2. ISBN 索引确定不存在的直接跳过，其余一次查询排除数据库中已存在的 ISBN
+        Set<String> candidates = new HashSet<>();
+        for (String isbn : byIsbn.keySet()) {
+            if (bookIsbnIndex.mightContain(isbn)) candidates.add(isbn);
+        }
+        if (!candidates.isEmpty()) {
+            Set<String> existing = findExistingIsbns(candidates);
+            if (!existing.isEmpty()) {
+                rows.removeIf(row -> row.book.getIsbn() != null && existing.contains(row.book.getIsbn()));
+                job.addDuplicates(existing.size());
+            }
+        }
+        if (rows.isEmpty()) return Collections.emptyList();
+
+        // 3. JDBC 批量插入；整批失败时逐行重试以定位无效数据
+        LocalDateTime now = LocalDateTime.now();
+        List<Book> inserted;
+        try {
+            inserted = insert(rows, now);
+        } catch (DataAccessException e) {
+            inserted = new ArrayList<>(rows.size());
+            for (ImportRow row : rows) {
+                try {
+                    inserted.addAll(insert(Collections.singletonList(row), now));
+                } catch (DataAccessException single) {
+                    Throwable cause = single.getMostSpecificCause();
+                    job.rowInvalid(row.line, cause != null ? cause.getMessage() : single.getMessage());
+                }
+            }
+        }
+
+        // 4. 更新内存索引和目录版本号（封面缩略图在导入结束后统一补齐）
+        for (Book book : inserted) {
+            bookIndexRegistry.onSaved(book);
+        }
+        job.addInserted(inserted.size());
+        catalogVersion.bump();
+        return inserted;
+    }
+
+    private Set<String> findExistingIsbns(Set<String> isbns) {
+        StringBuilder sql = new StringBuilder("SELECT isbn FROM books WHERE isbn IN (");
+        for (int i = 0; i < isbns.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        return new HashSet<>(jdbcTemplate.queryForList(sql.toString(), String.class, isbns.toArray()));
+    }
+
+    private List<Book> insert(List<ImportRow> rows, LocalDateTime now) {
+        Timestamp ts = Timestamp.valueOf(now);
+        return jdbcTemplate.execute((ConnectionCallback<List<Book>>) con -> {
+            List<Book> books = new ArrayList<>(rows.size());
+            try (PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (ImportRow row : rows) {
+                    Book b = row.book;
+                    ps.setString(1, b.getTitle());
+                    ps.setString(2, b.getAuthor());
+                    ps.setString(3, b.getIsbn());
+                    ps.setString(4, b.getPublisher());
+                    ps.setString(5, b.getDescription());
+                    ps.setString(6, Book.excerptOf(b.getDescription()));
+                    ps.setString(7, b.getCoverImage());
+                    if (b.getYear() != null) ps.setInt(8, b.getYear());
+                    else ps.setNull(8, Types.INTEGER);
+                    if (b.getCategoryId() != null) ps.setLong(9, b.getCategoryId());
+                    else ps.setNull(9, Types.BIGINT);
+                    ps.setTimestamp(10, ts);
+                    ps.setTimestamp(11, ts);
+                    ps.addBatch();
+                    books.add(b);
+                }
+                ps.executeBatch();
+                assignKeys(ps, books, now);
+            }
+            return books;
+        });
+    }
+
+    private static void assignKeys(PreparedStatement ps, List<Book> books, LocalDateTime now) throws SQLException {
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            int i = 0;
+            while (keys.next() && i < books.size()) {
+                Book b = books.get(i++);
+                b.setId(keys.getLong(1));
+                b.setCreatedAt(now);
+                b.setUpdatedAt(now);
+            }
+        }
+    }
+
+    private Iterator<Map<String, String>> csvRows(BufferedReader in) throws IOException {
+        CsvReader reader = new CsvReader(in);
+        List<String> header = reader.next();
+        if (header == null) return Collections.emptyIterator();
+        List<String> columns = new ArrayList<>(header.size());
+        for (String h : header) {
+            columns.add(columnName(h));
+        }
+        return new Iterator<Map<String, String>>() {
+            List<String> next = advance();
+
+            private List<String> advance() {
+                try {
+                    return reader.next();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                List<String> values = next;
+                next = advance();
+                // 跳过空行
+                if (values.size() == 1 && values.get(0).trim().isEmpty()) return null;
+                Map<String, String> fields = new HashMap<>();
+                for (int i = 0; i < columns.size() && i < values.size(); i++) {
+                    if (columns.get(i) != null) fields.put(columns.get(i), values.get(i));
+                }
+                return fields;
+            }
+        };
+    }
+
+    private Iterator<Map<String, String>> jsonRows(BufferedReader in) {
+        return new Iterator<Map<String, String>>() {
+            String next = advance();
+
+            private String advance() {
+                try {
+                    return in.readLine();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                String line = next;
+                next = advance();
+                if (line.trim().isEmpty()) return null;
+                Map<String, String> fields = new HashMap<>();
+                try {
+                    JsonNode node = objectMapper.readTree(line);
+                    Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+                    while (it.hasNext()) {
+                        Map.Entry<String, JsonNode> e = it.next();
+                        String column = columnName(e.getKey());
+                        if (column != null && !e.getValue().isNull()) fields.put(column, e.getValue().asText());
+                    }
+                } catch (JsonProcessingException e) {
+                    fields.put(PARSE_ERROR, e.getOriginalMessage());
+                }
+                return fields;
+            }
+        };
+    }
+
+    /**
+     * 统一列名（兼容驼峰、下划线和中文表头）
+     */
+    private static String columnName(String header) {
+        if (header == null) return null;
+        String h = header.trim().replace("\uFEFF", "").toLowerCase(Locale.ROOT).replace("_", "");
+        switch (h) {
+            case "title": case "书名": return "title";
+            case "author": case "作者": return "author";
+            case "isbn": return "isbn";
+            case "publisher": case "出版社": return "publisher";
+            case "description": case "简介": return "description";
+            case "year": case "出版年份": return "year";
+            case "category": case "categoryid": case "categoryname": case "分类": return "category";
+            case "coverimage": case "cover": case "coverurl": case "封面": return "coverImage";
+            default: return null;
+        }
+    }
+
+    /**
+     * 校验一行数据
+     * @return 错误原因，数据有效时返回null
+     */
+    private static String validate(Map<String, String> fields) {
+        if (fields.containsKey(PARSE_ERROR)) return "JSON 格式错误：" + fields.get(PARSE_ERROR);
+        String title = trimToNull(fields.get("title"));
+        String author = trimToNull(fields.get("author"));
+        if (title == null) return "书名不能为空";
+        if (author == null) return "作者不能为空";
+        if (title.length() > MAX_FIELD_LENGTH || author.length() > MAX_FIELD_LENGTH) return "书名或作者过长";
+        String publisher = trimToNull(fields.get("publisher"));
+        if (publisher != null && publisher.length() > MAX_FIELD_LENGTH) return "出版社名称过长";
+        String cover = trimToNull(fields.get("coverImage"));
+        if (cover != null && cover.length() > MAX_FIELD_LENGTH) return "封面地址过长";
+        String isbn = trimToNull(fields.get("isbn"));
+        if (isbn != null && Isbn.canonical(isbn) == null) return "ISBN 格式错误：" + isbn;
+        String year = trimToNull(fields.get("year"));
+        if (year != null) {
+            try {
+                int y = Integer.parseInt(year);
+                if (y < 0 || y > 9999) return "出版年份无效：" + year;
+            } catch (NumberFormatException e) {
+                return "出版年份无效：" + year;
+            }
+        }
+        return null;
+    }
+
+    private Book toBook(Map<String, String> fields) {
+        Book book = new Book();
+        book.setTitle(trimToNull(fields.get("title")));
+        book.setAuthor(trimToNull(fields.get("author")));
+        book.setIsbn(Isbn.canonical(fields.get("isbn")));
+        book.setPublisher(trimToNull(fields.get("publisher")));
+        book.setDescription(trimToNull(fields.get("description")));
+        book.setCoverImage(trimToNull(fields.get("coverImage")));
+        String year = trimToNull(fields.get("year"));
+        if (year != null) book.setYear(Integer.parseInt(year));
+        Category category = resolveCategory(trimToNull(fields.get("category")));
+        book.setCategoryId(category != null ? category.getId() : null);
+        return book;
+    }
+
+    /**
+     * 按ID或名称从分类字典解析分类，找不到时不设置分类
+     */
+    private Category resolveCategory(String value) {
+        if (value == null) return null;
+        if (value.chars().allMatch(Character::isDigit)) {
+            try {
+                Category byId = categoryDictionary.get(Long.valueOf(value));
+                if (byId != null) return byId;
+            } catch (NumberFormatException ignore) {
+                // 超出范围时按名称查找
+            }
+        }
+        return categoryDictionary.findByName(value);
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static final class ImportRow {
+        final long line;
+        final Book book;
+
+        ImportRow(long line, Book book) {
+            this.line = line;
+            this.book = book;
+        }
+    }
+}
@@ -1,22 +1,68 @@
 package com.example.qimo.service;
 
+import com.example.qimo.dto.BookCard;
+import com.example.qimo.dto.BookFacetFilter;
+import com.example.qimo.dto.FacetCounts;
 import com.example.qimo.entity.Book;
 import com.example.qimo.entity.Category;
+import com.example.qimo.dto.CursorPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface BookService {
+
+    /**
+     * 允许使用页码（OFFSET）访问的最大页数，更深的页只能通过游标访问
+     */
+    int MAX_OFFSET_PAGES = 20;
+
+    /**
+     * 列表每页最多显示的书籍数
+     */
+    int MAX_PAGE_SIZE = 50;
+
     List<Book> getAllBooks();
-    Page<Book> getBooks(Pageable pageable);
+
+    /**
+     * 分页查询书籍列表卡片（只包含列表页需要的字段）
+     */
+    Page<BookCard> getBooks(Pageable pageable);
     Optional<Book> getBookById(Long id);
+
+    /**
+     * 查询书籍的最后修改时间（不装载实体）
+     * @param id 书籍ID
+     * @return 最后修改时间，书籍不存在时为空
+     */
+    Optional<LocalDateTime> getBookLastModified(Long id);
+
+    /**
+     * 查询书籍的收藏数（读取冗余计数列）
+     * @param id 书籍ID
+     * @return 收藏数，书籍不存在时为0
+     */
+    int getFavoriteCount(Long id);
     Book saveBook(Book book, Long categoryId);
+
+    /**
+     * 为书籍封面提交缩略图生成任务（保存书籍后调用）
+     */
+    void generateCoverThumbnails(Long bookId, String coverImage);
+
+    /**
+     * 补齐ID区间内书籍缺少的封面缩略图（批量导入结束后调用），整个区间只提交一个后台任务
+     * @param fromId 区间下界（含）
+     * @param toId 区间上界（含）
+     */
+    void backfillCoverThumbnails(long fromId, long toId);
     void deleteBook(Long id);
     boolean existsByIsbn(String isbn);
     boolean existsByIsbnAndIdNot(String isbn, Long id);
     List<Book> getBooksByCategory(Category category);
-    Page<Book> getBooksByCategoryId(Long categoryId, Pageable pageable);
+    Page<BookCard> getBooksByCategoryId(Long categoryId, Pageable pageable);
     
     /**
      * 按分类筛选书籍
@@ -24,7 +70,15 @@ public interface BookService {
      * @param pageable 分页参数
      * @return 符合条件的书籍分页对象
      */
-    Page<Book> findBooksByCategory(Long categoryId, Pageable pageable);
+    Page<BookCard> findBooksByCategory(Long categoryId, Pageable pageable);
+
+    /**
+     * 按平均评分从高到低排序（评分人数多的优先，未评分的排在最后）
+     * @param categoryId 分类ID，为null时返回所有书籍
+     * @param pageable 分页参数（其中的排序被忽略）
+     * @return 符合条件的书籍分页对象
+     */
+    Page<BookCard> getBooksByRating(Long categoryId, Pageable pageable);
     
     /**
      * 按关键词和分类筛选书籍
@@ -33,5 +87,30 @@ public interface BookService {
      * @param pageable 分页参数
      * @return 符合条件的书籍分页对象
      */
-    Page<Book> searchBooksByCategory(String keyword, Long categoryId, Pageable pageable);
-}
\ No newline at end of file
+    Page<BookCard> searchBooksByCategory(String keyword, Long categoryId, Pageable pageable);
+
+    /**
+     * 基于 (createdAt, id) 的游标分页，按创建时间倒序
+     * @param categoryId 分类ID，为null时返回所有书籍
+     * @param after 向后翻页的游标（返回更早的书籍），可为null
+     * @param before 向前翻页的游标（返回更新的书籍），可为null；与after同时存在时优先使用after
+     * @param size 每页数量
+     * @return 游标分页结果
+     */
+    CursorPage<BookCard> getBooksByCursor(Long categoryId, String after, String before, int size);
+
+    /**
+     * 按多选条件（分类、出版年代、出版社）筛选书籍，按创建时间倒序
+     * @param filter 筛选条件
+     * @param pageable 分页参数
+     * @return 符合条件的书籍分页对象
+     */
+    Page<BookCard> findBooksByFacets(BookFacetFilter filter, Pageable pageable);
+
+    /**
+     * 计算列表页各筛选维度取值的数量
+     * @param filter 当前筛选条件
+     * @return 各维度计数；分面索引尚未就绪时返回null
+     */
+    FacetCounts getFacetCounts(BookFacetFilter filter);
+}
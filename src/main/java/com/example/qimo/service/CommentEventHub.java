@@ -0,0 +1,340 @@
+package com.example.qimo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 书籍评论区的实时事件（Server-Sent Events）。
+ * 每本书一个进程内主题，新评论、删除评论和点赞数变化在事务提交后发布到该主题，再分发给订阅者。
+ * 连接使用 Servlet 异步请求保持，空闲连接不占用请求线程；事件先放入每个订阅者的有界缓冲，由发送线程写出，
+ * 缓冲写满（客户端读取过慢）的订阅者直接断开，由浏览器的 EventSource 重连后刷新评论区。
+ * 写出是阻塞的：发送线程按需增加（有上限），一个卡住的客户端只占住自己的发送线程；单次写出超过 write-timeout-ms
+ * 的订阅者由巡检断开并中断其发送线程，发送线程恢复后结束该响应（最迟在容器的写超时到期时）。
+ * 已断开但响应尚未结束的订阅者由巡检继续跟踪直到结束；连接数按响应实际结束计算。
+ * 只在本进程内分发，多实例部署时各实例只推送本实例上发生的变化。
+ */
+@Service
+public class CommentEventHub {
+    private static final Logger logger = LoggerFactory.getLogger(CommentEventHub.class);
+
+    public static final String EVENT_COMMENT = "comment";
+    public static final String EVENT_DELETE = "delete";
+    public static final String EVENT_LIKE = "like";
+
+    private static final Event HEARTBEAT = new Event(null, null);
+
+    private final ObjectMapper objectMapper;
+    private final Map<Long, Set<Subscriber>> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    // 已断开（不再分发事件）但响应尚未结束的订阅者
+    private final Set<Subscriber> closing = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor sender;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long timeoutMs;
+    private final long writeTimeoutMs;
+
+    public CommentEventHub(ObjectMapper objectMapper,
+                           @Value("${qimo.comments.events.buffer-size:32}") int bufferSize,
+                           @Value("${qimo.comments.events.max-subscribers:10000}") int maxSubscribers,
+                           @Value("${qimo.comments.events.timeout-ms:1800000}") long timeoutMs,
+                           @Value("${qimo.comments.events.write-timeout-ms:10000}") long writeTimeoutMs,
+                           @Value("${qimo.comments.events.sender-threads:2}") int senderThreads,
+                           @Value("${qimo.comments.events.max-sender-threads:64}") int maxSenderThreads) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMs = timeoutMs;
+        this.writeTimeoutMs = writeTimeoutMs;
+        AtomicInteger threadNo = new AtomicInteger();
+        // 不排队：空闲线程不足时新建线程，已达上限时拒绝，事件留在缓冲中由下一次心跳重新调度
+        this.sender = new ThreadPoolExecutor(senderThreads, Math.max(senderThreads, maxSenderThreads),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "comment-events-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 订阅某本书的评论事件
+     * @param bookId 书籍ID
+     * @return 事件流
+     * @throws IllegalStateException 连接数已达上限
+     */
+    public SseEmitter subscribe(Long bookId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("实时连接数已满，请稍后重试");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(bookId, emitter, bufferSize);
+        emitter.onCompletion(() -> ended(subscriber));
+        emitter.onTimeout(() -> ended(subscriber));
+        emitter.onError(e -> ended(subscriber));
+        topics.compute(bookId, (k, subscribers) -> {
+            Set<Subscriber> set = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+        // 立即写出一条注释，让响应头尽快到达客户端
+        offer(subscriber, HEARTBEAT);
+        return emitter;
+    }
+
+    /**
+     * 发布新评论（调用方应在事务提交后调用）
+     */
+    public void publishComment(Long bookId, Long commentId, Long parentId) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", commentId);
+        data.put("parentId", parentId);
+        publish(bookId, EVENT_COMMENT, data);
+    }
+
+    /**
+     * 发布评论删除（调用方应在事务提交后调用）
+     */
+    public void publishDelete(Long bookId, Long commentId) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", commentId);
+        publish(bookId, EVENT_DELETE, data);
+    }
+
+    /**
+     * 发布点赞数变化（调用方应在事务提交后调用）
+     * @param delta 点赞数增量
+     * @param likeCount 变化后的点赞数
+     */
+    public void publishLike(Long bookId, Long commentId, int delta, long likeCount) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", commentId);
+        data.put("delta", delta);
+        data.put("likeCount", likeCount);
+        publish(bookId, EVENT_LIKE, data);
+    }
+
+    /**
+     * @return 当前订阅者数量
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * 定时向全部订阅者发送心跳注释，防止代理断开空闲连接，同时清理已断开的客户端
+     */
+    @Scheduled(fixedDelayString = "${qimo.comments.events.heartbeat-ms:20000}")
+    public void heartbeat() {
+        topics.values().forEach(subscribers -> subscribers.forEach(s -> offer(s, HEARTBEAT)));
+    }
+
+    /**
+     * 断开单次写出超时的订阅者（不再向其分发事件，并中断卡住的发送线程），
+     * 并结束已断开但响应仍未结束的订阅者
+     */
+    @Scheduled(fixedDelayString = "${qimo.comments.events.write-check-ms:1000}")
+    public void dropStalledSubscribers() {
+        long now = System.currentTimeMillis();
+        topics.values().forEach(subscribers -> subscribers.forEach(s -> {
+            long since = s.sendingSince;
+            if (since != 0 && now - since > writeTimeoutMs) {
+                logger.debug("Dropping stalled event subscriber of book {}", s.bookId);
+                drop(s);
+            }
+        }));
+        closing.forEach(s -> {
+            if (s.ended.get()) {
+                closing.remove(s);
+            } else {
+                finish(s);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        topics.values().forEach(subscribers -> subscribers.forEach(this::complete));
+        closing.forEach(this::complete);
+        sender.shutdownNow();
+    }
+
+    private void publish(Long bookId, String name, Map<String, Object> data) {
+        Set<Subscriber> subscribers = topics.get(bookId);
+        if (subscribers == null || subscribers.isEmpty()) return;
+        Event event;
+        try {
+            // 每个事件只序列化一次，所有订阅者共用
+            event = new Event(name, objectMapper.writeValueAsString(data));
+        } catch (JsonProcessingException e) {
+            logger.warn("序列化评论事件失败: {}", name, e);
+            return;
+        }
+        subscribers.forEach(s -> offer(s, event));
+    }
+
+    private void offer(Subscriber subscriber, Event event) {
+        if (subscriber.closed.get()) return;
+        if (!subscriber.buffer.offer(event)) {
+            // 客户端读取过慢，缓冲已满：断开连接
+            logger.debug("Dropping slow event subscriber of book {}", subscriber.bookId);
+            drop(subscriber);
+            return;
+        }
+        schedule(subscriber);
+    }
+
+    /**
+     * 立即断开订阅者并尝试结束响应
+     */
+    private void drop(Subscriber subscriber) {
+        close(subscriber);
+        finish(subscriber);
+    }
+
+    /**
+     * 结束已断开订阅者的响应。emitter 的方法与 send 互斥：没有发送任务时取得发送权后直接结束；
+     * 发送任务正在运行时只中断它，由它结束响应，未结束的由巡检再次处理
+     */
+    private void finish(Subscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            // 发送权不再释放，之后不会再调度发送任务
+            subscriber.buffer.clear();
+            complete(subscriber);
+            closing.remove(subscriber);
+            return;
+        }
+        Thread thread = subscriber.sendingThread;
+        if (thread != null) thread.interrupt();
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                // 发送线程已达上限或正在关闭，事件留在缓冲中
+                subscriber.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * 写出订阅者缓冲中的事件；同一订阅者同时只有一个发送任务，保证事件顺序
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            if (subscriber.closed.get()) {
+                // 保持发送权，结束响应
+                subscriber.buffer.clear();
+                complete(subscriber);
+                closing.remove(subscriber);
+                return;
+            }
+            Event event = subscriber.buffer.poll();
+            if (event == null) {
+                subscriber.scheduled.set(false);
+                // 放弃发送权后又有新事件到达，且没有其他任务接手时继续发送
+                if (subscriber.buffer.isEmpty() || !subscriber.scheduled.compareAndSet(false, true)) return;
+                continue;
+            }
+            subscriber.sendingThread = Thread.currentThread();
+            subscriber.sendingSince = System.currentTimeMillis();
+            try {
+                subscriber.emitter.send(event.name == null
+                        ? SseEmitter.event().comment("ping")
+                        : SseEmitter.event().name(event.name).data(event.data));
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开
+                close(subscriber);
+            } finally {
+                subscriber.sendingSince = 0;
+                subscriber.sendingThread = null;
+                // 清除巡检留下的中断标记，线程回到池中继续使用
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private void complete(Subscriber subscriber) {
+        try {
+            subscriber.emitter.complete();
+        } catch (RuntimeException e) {
+            // 连接已由容器结束
+            logger.debug("Event stream of book {} already closed: {}", subscriber.bookId, e.getMessage());
+        }
+    }
+
+    /**
+     * 停止向订阅者分发事件；响应结束前留在 closing 中
+     */
+    private void close(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) return;
+        if (!subscriber.ended.get()) closing.add(subscriber);
+        // 与订阅在同一个原子操作中增删，空主题移除时不会丢失并发加入的订阅者
+        topics.computeIfPresent(subscriber.bookId, (k, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * 响应已结束（完成、超时或出错）：释放连接名额
+     */
+    private void ended(Subscriber subscriber) {
+        if (!subscriber.ended.compareAndSet(false, true)) return;
+        close(subscriber);
+        closing.remove(subscriber);
+        subscriberCount.decrementAndGet();
+    }
+
+    private static final class Subscriber {
+        final Long bookId;
+        final SseEmitter emitter;
+        final BlockingQueue<Event> buffer;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final AtomicBoolean ended = new AtomicBoolean();
+        // 正在写出时记录开始时间和发送线程，供巡检判断是否卡住
+        volatile long sendingSince;
+        volatile Thread sendingThread;
+
+        Subscriber(Long bookId, SseEmitter emitter, int bufferSize) {
+            this.bookId = bookId;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+
+    private static final class Event {
+        // 为null时是心跳注释
+        final String name;
+        final String data;
+
+        Event(String name, String data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+}
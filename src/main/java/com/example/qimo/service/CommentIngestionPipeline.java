@@ -0,0 +1,280 @@
+package com.example.qimo.service;
+
+import com.example.qimo.cache.CommentSectionCache;
+import com.example.qimo.entity.Comment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 评论写入管道（qimo.comments.ingest.enabled=true 时启用）。
+ * 请求线程只做校验，把评论放入有界队列后等待写入结果；单个写入线程每次取出队列中积压的评论（最多 GROUP_SIZE 条），
+ * 在一个事务内批量插入并更新路径和计数（组提交）。数据库变慢时队列积压，新的提交等待片刻后直接被拒绝，
+ * 请求线程不会无限堆积；提交成功返回时评论已落库，发表者跳转回详情页即可看到自己的评论。
+ * 已入队但等待提交超时的评论仍会写入，此时返回“处理中”而不是失败，避免发表者重复提交。
+ */
+@Service
+public class CommentIngestionPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(CommentIngestionPipeline.class);
+
+    private static final int GROUP_SIZE = 64;
+    private static final String INSERT_SQL =
+            "INSERT INTO comments (content, created_at, book_id, user_id, parent_id, depth) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CommentSectionCache commentSectionCache;
+    private final CommentEventHub commentEventHub;
+    private final TrendingService trendingService;
+    private final TransactionTemplate transaction;
+    private final boolean enabled;
+    private final long offerTimeoutMs;
+    private final long commitTimeoutMs;
+    private final BlockingQueue<PendingComment> queue;
+    private volatile boolean running;
+    private Thread writer;
+
+    public CommentIngestionPipeline(JdbcTemplate jdbcTemplate, CommentSectionCache commentSectionCache,
+                                    CommentEventHub commentEventHub, TrendingService trendingService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${qimo.comments.ingest.enabled:true}") boolean enabled,
+                                    @Value("${qimo.comments.ingest.queue-capacity:1024}") int capacity,
+                                    @Value("${qimo.comments.ingest.offer-timeout-ms:100}") long offerTimeoutMs,
+                                    @Value("${qimo.comments.ingest.commit-timeout-ms:5000}") long commitTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.commentSectionCache = commentSectionCache;
+        this.commentEventHub = commentEventHub;
+        this.trendingService = trendingService;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.commitTimeoutMs = commitTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        running = true;
+        writer = new Thread(this::drainLoop, "comment-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return 是否启用写入管道
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交一条已校验的评论并等待其所在批次提交
+     * @param bookId 书籍ID
+     * @param userId 作者ID
+     * @param content 评论内容
+     * @param parentId 父评论ID，主评论为null
+     * @param parentPath 父评论的物化路径，主评论为空字符串
+     * @param depth 评论深度
+     * @return true 表示已提交；false 表示等待超时，评论仍在队列中，稍后写入
+     * @throws IllegalStateException 队列已满、服务正在关闭或写入失败
+     * @throws IllegalArgumentException 书籍或父评论在写入前已被删除
+     */
+    public boolean submit(long bookId, long userId, String content, Long parentId, String parentPath, int depth) {
+        PendingComment item = new PendingComment(bookId, userId, content, parentId, parentPath, depth);
+        try {
+            if (!running || !queue.offer(item, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("评论提交繁忙，请稍后重试");
+            }
+            // 入队时恰好开始关闭：评论还在队列中就撤回，否则已由写入线程或 shutdown 接手
+            if (!running && queue.remove(item)) {
+                throw new IllegalStateException("服务正在重启，请稍后重试");
+            }
+            item.result.get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            // 评论仍在队列中，稍后会写入
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("发表评论失败", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("发表评论被中断");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) return;
+        // 停止接收新评论，写完队列中剩余的评论后退出
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        // 写入线程未能写完的评论明确失败，不让提交者一直等到超时
+        List<PendingComment> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            logger.warn("关闭时仍有 {} 条评论未写入", rest.size());
+            IllegalStateException e = new IllegalStateException("服务正在重启，评论未保存，请稍后重试");
+            rest.forEach(item -> item.result.completeExceptionally(e));
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingComment> group = new ArrayList<>(GROUP_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingComment first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                // 上一批提交期间积压的评论一起提交
+                group.add(first);
+                queue.drainTo(group, GROUP_SIZE - 1);
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("评论写入线程异常", e);
+                group.forEach(item -> item.result.completeExceptionally(e));
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingComment> group) {
+        try {
+            transaction.executeWithoutResult(status -> write(group));
+            // 事务提交成功后才公开ID
+            group.forEach(item -> item.id = item.pendingId);
+        } catch (RuntimeException e) {
+            if (group.size() == 1) {
+                group.get(0).result.completeExceptionally(translate(e));
+                return;
+            }
+            // 整批失败时逐条重试，只让出错的评论失败
+            for (PendingComment item : group) {
+                try {
+                    transaction.executeWithoutResult(status -> write(Collections.singletonList(item)));
+                    item.id = item.pendingId;
+                } catch (RuntimeException single) {
+                    item.result.completeExceptionally(translate(single));
+                }
+            }
+        }
+        Set<Long> books = new HashSet<>();
+        for (PendingComment item : group) {
+            if (item.id > 0) books.add(item.bookId);
+        }
+        books.forEach(commentSectionCache::bump);
+        for (PendingComment item : group) {
+            if (item.id > 0) {
+                item.result.complete(item.id);
+                commentEventHub.publishComment(item.bookId, item.id, item.parentId);
+                trendingService.record(item.bookId, TrendingService.Signal.COMMENT);
+            }
+        }
+    }
+
+    private void write(List<PendingComment> group) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (PendingComment item : group) {
+                    ps.setString(1, item.content);
+                    ps.setTimestamp(2, now);
+                    ps.setLong(3, item.bookId);
+                    ps.setLong(4, item.userId);
+                    if (item.parentId != null) ps.setLong(5, item.parentId);
+                    else ps.setNull(5, Types.BIGINT);
+                    ps.setInt(6, item.depth);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (PendingComment item : group) {
+                        if (!keys.next()) throw new IllegalStateException("未返回评论ID");
+                        item.pendingId = keys.getLong(1);
+                    }
+                }
+            }
+            return null;
+        });
+
+        // 物化路径依赖自增ID，插入后补写；计数按ID排序后更新，保持加锁顺序一致
+        List<Object[]> paths = new ArrayList<>(group.size());
+        Map<Long, Integer> bookDeltas = new TreeMap<>();
+        Map<Long, Integer> replyDeltas = new TreeMap<>();
+        for (PendingComment item : group) {
+            paths.add(new Object[]{item.parentPath + Comment.pathSegment(item.pendingId), item.pendingId});
+            bookDeltas.merge(item.bookId, 1, Integer::sum);
+            if (item.parentId != null) replyDeltas.merge(item.parentId, 1, Integer::sum);
+        }
+        jdbcTemplate.batchUpdate("UPDATE comments SET path = ? WHERE id = ?", paths);
+        jdbcTemplate.batchUpdate("UPDATE books SET comment_count = comment_count + ? WHERE id = ?", deltaArgs(bookDeltas));
+        if (!replyDeltas.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE comments SET reply_count = reply_count + ? WHERE id = ?", deltaArgs(replyDeltas));
+        }
+    }
+
+    private static List<Object[]> deltaArgs(Map<Long, Integer> deltas) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> args.add(new Object[]{delta, id}));
+        return args;
+    }
+
+    private static RuntimeException translate(RuntimeException e) {
+        if (e instanceof DataIntegrityViolationException) {
+            return new IllegalArgumentException("书籍或被回复的评论已被删除");
+        }
+        return e;
+    }
+
+    private static final class PendingComment {
+        final long bookId;
+        final long userId;
+        final String content;
+        final Long parentId;
+        final String parentPath;
+        final int depth;
+        final CompletableFuture<Long> result = new CompletableFuture<>();
+        long pendingId;
+        long id;
+
+        PendingComment(long bookId, long userId, String content, Long parentId, String parentPath, int depth) {
+            this.bookId = bookId;
+            this.userId = userId;
+            this.content = content;
+            this.parentId = parentId;
+            this.parentPath = parentPath;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.qimo.service;
+
+import com.example.qimo.cache.CommentSectionCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 评论点赞的写回缓冲（qimo.likes.write-behind.enabled=true 时启用）。
+ * 点赞/取消点赞先记录在按 (评论, 用户) 分段加锁的内存状态中并立即生效，同一用户对同一评论的连续操作会合并，
+ * 点赞后又取消的操作直接抵消；缓冲内容定期以 JDBC 批量写入 comment_likes，并把每条评论合并后的净增量加到点赞数上
+ * （INSERT IGNORE / DELETE 幂等，意图相对基准状态的增量是准确的，偶发的偏差由计数校对任务修正）。
+ * 正常关闭时先写入数据库，写入失败则转存到本地文件，下次启动时重新载入。
+ */
+@Service
+public class CommentLikeBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(CommentLikeBuffer.class);
+
+    private static final int STRIPES = 32;
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_LIKE = "INSERT IGNORE INTO comment_likes (comment_id, user_id) VALUES (?, ?)";
+    private static final String DELETE_LIKE = "DELETE FROM comment_likes WHERE comment_id = ? AND user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CommentSectionCache commentSectionCache;
+    private final CommentEventHub commentEventHub;
+    private final TrendingService trendingService;
+    private final TransactionTemplate transaction;
+    private final boolean enabled;
+    private final Path spillFile;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    // 缓冲中（含写入中）的意图数量，为0时读取路径可直接跳过
+    private final AtomicInteger size = new AtomicInteger();
+    // 评论ID -> 缓冲中（含写入中）尚未计入点赞数的净增量，用于立即返回切换后的点赞数
+    private final Map<Long, Integer> pendingDeltas = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+
+    public CommentLikeBuffer(JdbcTemplate jdbcTemplate, CommentSectionCache commentSectionCache,
+                             CommentEventHub commentEventHub, TrendingService trendingService,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${qimo.likes.write-behind.enabled:false}") boolean enabled,
+                             @Value("${qimo.likes.write-behind.spill-file:./data/like-buffer.csv}") String spillFile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.commentSectionCache = commentSectionCache;
+        this.commentEventHub = commentEventHub;
+        this.trendingService = trendingService;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.spillFile = Paths.get(spillFile).toAbsolutePath().normalize();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @return 是否启用写回模式
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 切换点赞状态（只修改内存状态，由定时任务写入数据库）
+     * @param commentId 评论ID
+     * @param bookId 评论所属书籍ID
+     * @param userId 用户ID
+     * @param username 用户名（用于合并当前用户的点赞状态）
+     * @return 切换后是否为已点赞
+     */
+    public boolean toggle(long commentId, long bookId, long userId, String username) {
+        return update(commentId, bookId, userId, username, null);
+    }
+
+    /**
+     * 设置点赞状态（幂等）
+     * @param liked 目标状态
+     * @return 设置后是否为已点赞
+     */
+    public boolean set(long commentId, long bookId, long userId, String username, boolean liked) {
+        return update(commentId, bookId, userId, username, liked);
+    }
+
+    private boolean update(long commentId, long bookId, long userId, String username, Boolean target) {
+        Key key = new Key(commentId, userId);
+        Stripe stripe = stripeOf(key);
+        Boolean stored = null;
+        while (true) {
+            synchronized (stripe) {
+                Intent intent = stripe.pending.get(key);
+                Intent flushing = stripe.flushing.get(key);
+                if (intent != null || flushing != null || stored != null) {
+                    // 正在写入的意图视为已持久化的状态
+                    boolean base = intent != null ? intent.base : flushing != null ? flushing.desired : stored;
+                    boolean current = intent != null ? intent.desired : base;
+                    boolean desired = target != null ? target : !current;
+                    addPendingDelta(commentId, delta(base, desired) - (intent != null ? delta(intent.base, intent.desired) : 0));
+                    if (desired == base) {
+                        if (stripe.pending.remove(key) != null) size.decrementAndGet();
+                    } else if (intent == null) {
+                        stripe.pending.put(key, new Intent(bookId, username, base, desired));
+                        size.incrementAndGet();
+                    } else {
+                        intent.desired = desired;
+                    }
+                    return desired;
+                }
+            }
+            // 缓冲中没有该用户对该评论的记录：在锁外查询数据库中的状态后重试
+            stored = isStoredLike(commentId, userId);
+        }
+    }
+
+    /**
+     * @return 缓冲中尚未计入评论点赞数的净增量
+     */
+    public int pendingDelta(long commentId) {
+        return size.get() == 0 ? 0 : pendingDeltas.getOrDefault(commentId, 0);
+    }
+
+    /**
+     * 把缓冲中尚未写入的操作合并到用户在某本书下已点赞的评论ID中
+     * @param bookId 书籍ID
+     * @param username 用户名
+     * @param likedIds 数据库中的已点赞评论ID（原地修改）
+     * @return 合并后的评论ID集合
+     */
+    public Set<Long> overlay(Long bookId, String username, Set<Long> likedIds) {
+        if (size.get() == 0 || bookId == null || username == null) return likedIds;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                // 先应用写入中的意图，再应用更新的待写入意图
+                apply(stripe.flushing, bookId, username, likedIds);
+                apply(stripe.pending, bookId, username, likedIds);
+            }
+        }
+        return likedIds;
+    }
+
+    /**
+     * 定时把缓冲写入数据库
+     */
+    @Scheduled(fixedDelayString = "${qimo.likes.write-behind.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("点赞缓冲写入失败，将在下次重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 把当前缓冲的全部意图写入 comment_likes，并重新统计受影响评论的点赞数
+     * @return 写入的意图数量
+     */
+    public int flush() {
+        if (size.get() == 0) return 0;
+        synchronized (flushLock) {
+            List<Map.Entry<Key, Intent>> drained = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    if (stripe.pending.isEmpty()) continue;
+                    stripe.flushing = stripe.pending;
+                    stripe.pending = new HashMap<>();
+                    drained.addAll(stripe.flushing.entrySet());
+                }
+            }
+            if (drained.isEmpty()) return 0;
+            List<long[]> counts;
+            try {
+                counts = transaction.execute(status -> write(drained));
+            } catch (RuntimeException e) {
+                restore();
+                throw e;
+            }
+            Set<Long> books = new HashSet<>();
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    size.addAndGet(-stripe.flushing.size());
+                    stripe.flushing.forEach((key, intent) -> addPendingDelta(key.commentId, -delta(intent.base, intent.desired)));
+                    stripe.flushing.values().forEach(intent -> books.add(intent.bookId));
+                    stripe.flushing = new HashMap<>();
+                }
+            }
+            books.forEach(commentSectionCache::bump);
+            publishLikes(drained, counts);
+            return drained.size();
+        }
+    }
+
+    @PostConstruct
+    public void loadSpill() {
+        if (!Files.exists(spillFile)) return;
+        int loaded = 0;
+        try {
+            for (String line : Files.readAllLines(spillFile, StandardCharsets.UTF_8)) {
+                String[] f = line.split(",", 5);
+                if (f.length < 5) continue;
+                Key key = new Key(Long.parseLong(f[0]), Long.parseLong(f[1]));
+                Intent intent = new Intent(Long.parseLong(f[2]), f[4], "1".equals(f[3]), !"1".equals(f[3]));
+                synchronized (stripeOf(key)) {
+                    Intent previous = stripeOf(key).pending.put(key, intent);
+                    if (previous == null) size.incrementAndGet();
+                    addPendingDelta(key.commentId, delta(intent.base, intent.desired)
+                            - (previous != null ? delta(previous.base, previous.desired) : 0));
+                }
+                loaded++;
+            }
+            Files.delete(spillFile);
+            logger.info("已载入上次关闭时转存的 {} 条点赞操作", loaded);
+        } catch (IOException | RuntimeException e) {
+            logger.error("载入点赞缓冲转存文件失败: {}", spillFile, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+            return;
+        } catch (Exception e) {
+            logger.error("关闭时写入点赞缓冲失败，转存到 {}", spillFile, e);
+        }
+        spill();
+    }
+
+    /**
+     * @return 受影响评论写入后的 {评论ID, 书籍ID, 点赞数}
+     */
+    private List<long[]> write(List<Map.Entry<Key, Intent>> drained) {
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        // 按评论ID排序更新计数，与其它写入保持一致的加锁顺序
+        Map<Long, Integer> deltas = new TreeMap<>();
+        for (Map.Entry<Key, Intent> e : drained) {
+            Intent intent = e.getValue();
+            Object[] args = {e.getKey().commentId, e.getKey().userId};
+            (intent.desired ? inserts : deletes).add(args);
+            deltas.merge(e.getKey().commentId, delta(intent.base, intent.desired), Integer::sum);
+        }
+        batch(DELETE_LIKE, deletes);
+        batch(INSERT_LIKE, inserts);
+        // 加上合并后的净增量，不重新统计点赞记录（热门评论的点赞数可能很大）
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> {
+            if (delta != 0) updates.add(new Object[]{delta, id});
+        });
+        for (int from = 0; from < updates.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate("UPDATE comments SET like_count = GREATEST(like_count + ?, 0) WHERE id = ?",
+                    updates.subList(from, Math.min(from + BATCH_SIZE, updates.size())));
+        }
+        List<Long> ids = new ArrayList<>(deltas.keySet());
+        List<long[]> counts = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            String in = chunk.stream().map(String::valueOf).collect(Collectors.joining(","));
+            counts.addAll(jdbcTemplate.query("SELECT id, book_id, like_count FROM comments WHERE id IN (" + in + ")",
+                    (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)}));
+        }
+        return counts;
+    }
+
+    /**
+     * 向评论区的实时订阅者推送本次写入的点赞数变化，并把新增的点赞计入热门书籍
+     */
+    private void publishLikes(List<Map.Entry<Key, Intent>> drained, List<long[]> counts) {
+        if (counts == null) return;
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (Map.Entry<Key, Intent> e : drained) {
+            deltas.merge(e.getKey().commentId, e.getValue().desired ? 1 : -1, Integer::sum);
+            if (e.getValue().desired) trendingService.record(e.getValue().bookId, TrendingService.Signal.LIKE);
+        }
+        for (long[] row : counts) {
+            commentEventHub.publishLike(row[1], row[0], deltas.getOrDefault(row[0], 0), row[2]);
+        }
+    }
+
+    private void batch(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            List<Object[]> chunk = rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()));
+            try {
+                jdbcTemplate.batchUpdate(sql, chunk);
+            } catch (RuntimeException e) {
+                // 批量失败（如评论已被删除导致外键冲突）时逐条执行，跳过失败的行
+                for (Object[] row : chunk) {
+                    try {
+                        jdbcTemplate.update(sql, row);
+                    } catch (RuntimeException rowError) {
+                        logger.debug("Dropped buffered like comment={} user={}: {}", row[0], row[1], rowError.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入失败：把写入中的意图放回待写入状态，与期间产生的新意图合并
+     */
+    private void restore() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Map.Entry<Key, Intent> e : stripe.flushing.entrySet()) {
+                    Intent old = e.getValue();
+                    Intent newer = stripe.pending.get(e.getKey());
+                    if (newer == null) {
+                        stripe.pending.put(e.getKey(), old);
+                    } else {
+                        // 新意图以写入中的状态为基准，恢复为最初的基准
+                        newer.base = old.base;
+                        size.decrementAndGet();
+                        if (newer.base == newer.desired) {
+                            stripe.pending.remove(e.getKey());
+                            size.decrementAndGet();
+                        }
+                    }
+                }
+                stripe.flushing = new HashMap<>();
+            }
+        }
+    }
+
+    private void spill() {
+        try {
+            Files.createDirectories(spillFile.getParent());
+            Path tmp = spillFile.resolveSibling(spillFile.getFileName() + ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Stripe stripe : stripes) {
+                    synchronized (stripe) {
+                        for (Map.Entry<Key, Intent> e : stripe.pending.entrySet()) {
+                            Intent intent = e.getValue();
+                            out.write(e.getKey().commentId + "," + e.getKey().userId + "," + intent.bookId + ","
+                                    + (intent.base ? "1" : "0") + "," + intent.username);
+                            out.newLine();
+                        }
+                    }
+                }
+            }
+            Files.move(tmp, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("转存点赞缓冲失败，{} 条操作丢失", size.get(), e);
+        }
+    }
+
+    private boolean isStoredLike(long commentId, long userId) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM comment_likes WHERE comment_id = ? AND user_id = ?", Integer.class, commentId, userId);
+        return count != null && count > 0;
+    }
+
+    private void addPendingDelta(long commentId, int change) {
+        if (change == 0) return;
+        pendingDeltas.merge(commentId, change, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    /**
+     * 意图相对基准状态对点赞数的增量
+     */
+    private static int delta(boolean base, boolean desired) {
+        return (desired ? 1 : 0) - (base ? 1 : 0);
+    }
+
+    private static void apply(Map<Key, Intent> intents, Long bookId, String username, Set<Long> result) {
+        for (Map.Entry<Key, Intent> e : intents.entrySet()) {
+            Intent intent = e.getValue();
+            if (intent.bookId != bookId || !username.equals(intent.username)) continue;
+            if (intent.desired) {
+                result.add(e.getKey().commentId);
+            } else {
+                result.remove(e.getKey().commentId);
+            }
+        }
+    }
+
+    private Stripe stripeOf(Key key) {
+        return stripes[Math.floorMod(key.hashCode(), STRIPES)];
+    }
+
+    private static final class Stripe {
+        Map<Key, Intent> pending = new HashMap<>();
+        // 正在写入数据库的意图
+        Map<Key, Intent> flushing = new HashMap<>();
+    }
+
+    private static final class Key {
+        final long commentId;
+        final long userId;
+
+        Key(long commentId, long userId) {
+            this.commentId = commentId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return commentId == other.commentId && userId == other.userId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(commentId * 31 + userId);
+        }
+    }
+
+    private static final class Intent {
+        final long bookId;
+        final String username;
+        // 意图产生时数据库中的状态，desired 与之相同时意图被抵消
+        boolean base;
+        boolean desired;
+
+        Intent(long bookId, String username, boolean base, boolean desired) {
+            this.bookId = bookId;
+            this.username = username;
+            this.base = base;
+            this.desired = desired;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.qimo.service;
+
+import com.example.qimo.cache.CommentSectionCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 清理已删除（墓碑）评论的子树。
+ * 删除评论时只写入墓碑标记；这里按物化路径找出墓碑的全部后代，从最深处开始每批删除 BATCH_SIZE 条评论及其点赞记录，
+ * 每批一个短事务，避免在用户请求中逐行级联删除大的回复树。后代中尚未标记删除的评论在此时扣减书籍评论数。
+ */
+@Service
+public class CommentPurgeService {
+    private static final Logger logger = LoggerFactory.getLogger(CommentPurgeService.class);
+
+    // 每轮最多处理的墓碑数
+    private static final int TOMBSTONES_PER_RUN = 100;
+    // 每批删除的评论数
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CommentSectionCache commentSectionCache;
+    private final TransactionTemplate transaction;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public CommentPurgeService(JdbcTemplate jdbcTemplate, CommentSectionCache commentSectionCache,
+                               PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.commentSectionCache = commentSectionCache;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${qimo.comments.purge-interval-ms:5000}")
+    public void scheduledPurge() {
+        try {
+            purge();
+        } catch (Exception e) {
+            logger.error("清理已删除评论失败", e);
+        }
+    }
+
+    /**
+     * 清理一轮墓碑
+     * @return 删除的评论数
+     */
+    public int purge() {
+        if (!running.compareAndSet(false, true)) return 0;
+        try {
+            int total = 0;
+            // 路径尚未补齐且有回复的墓碑无法定位子树，等启动时补齐路径后再清理，不占用本轮名额
+            List<Tombstone> tombstones = jdbcTemplate.query(
+                    "SELECT c.id, c.book_id, c.path FROM comments c WHERE c.deleted = true AND (c.path IS NOT NULL "
+                            + "OR NOT EXISTS (SELECT 1 FROM comments r WHERE r.parent_id = c.id)) ORDER BY c.id LIMIT " + TOMBSTONES_PER_RUN,
+                    (rs, i) -> new Tombstone(rs.getLong(1), rs.getLong(2), rs.getString(3)));
+            for (Tombstone tombstone : tombstones) {
+                try {
+                    total += purgeSubtree(tombstone);
+                } catch (RuntimeException e) {
+                    // 单个墓碑失败不影响其余墓碑，下一轮重试
+                    logger.warn("清理已删除评论 {} 失败: {}", tombstone.id, e.getMessage());
+                }
+                commentSectionCache.bump(tombstone.bookId);
+            }
+            if (total > 0) {
+                logger.info("已清理 {} 条已删除的评论", total);
+            }
+            return total;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int purgeSubtree(Tombstone tombstone) {
+        int total = 0;
+        while (true) {
+            // 路径倒序：后代总是排在祖先之前，先删子评论不会违反 parent_id 外键
+            List<long[]> batch = tombstone.path != null
+                    ? jdbcTemplate.query("SELECT id, deleted FROM comments WHERE book_id = ? AND path LIKE ? ORDER BY path DESC LIMIT " + BATCH_SIZE,
+                        (rs, i) -> new long[]{rs.getLong(1), rs.getBoolean(2) ? 1 : 0}, tombstone.bookId, tombstone.path + "%")
+                    : jdbcTemplate.query("SELECT id, deleted FROM comments WHERE id = ?",
+                        (rs, i) -> new long[]{rs.getLong(1), rs.getBoolean(2) ? 1 : 0}, tombstone.id);
+            if (batch.isEmpty()) return total;
+            String ids = batch.stream().map(row -> String.valueOf(row[0])).collect(Collectors.joining(","));
+            // 墓碑本身在删除时已扣减计数，这里只扣减仍可见的后代
+            int visible = (int) batch.stream().filter(row -> row[1] == 0).count();
+            transaction.executeWithoutResult(status -> {
+                jdbcTemplate.update("DELETE FROM comment_likes WHERE comment_id IN (" + ids + ")");
+                jdbcTemplate.update("DELETE FROM comments WHERE id IN (" + ids + ")");
+                if (visible > 0) {
+                    jdbcTemplate.update("UPDATE books SET comment_count = comment_count - ? WHERE id = ?", visible, tombstone.bookId);
+                }
+            });
+            total += batch.size();
+            if (tombstone.path == null) return total;
+        }
+    }
+
+    private static final class Tombstone {
+        final long id;
+        final long bookId;
+        final String path;
+
+        Tombstone(long id, long bookId, String path) {
+            this.id = id;
+            this.bookId = bookId;
+            this.path = path;
+        }
+    }
+}
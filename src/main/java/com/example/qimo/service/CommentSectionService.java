@@ -0,0 +1,84 @@
+package com.example.qimo.service;
+
+import com.example.qimo.cache.CommentSectionCache;
+import com.example.qimo.dto.CommentNode;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 书籍详情页评论区的渲染服务。
+ * 评论区按页渲染为与访问者无关的共享 HTML 并按（书籍, 排序, 页码）缓存；点赞状态、删除/回复按钮等
+ * 与访问者相关的部分由页面脚本根据当前用户信息在客户端处理。
+ */
+@Service
+public class CommentSectionService {
+
+    private static final String TEMPLATE = "book/comment-list";
+    private static final Set<String> SECTION = Collections.singleton("section");
+    private static final Set<String> REPLIES = Collections.singleton("replies");
+
+    private final CommentService commentService;
+    private final CommentSectionCache commentSectionCache;
+    private final ITemplateEngine templateEngine;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Autowired
+    public CommentSectionService(CommentService commentService, CommentSectionCache commentSectionCache,
+                                 ITemplateEngine templateEngine, PlatformTransactionManager transactionManager) {
+        this.commentService = commentService;
+        this.commentSectionCache = commentSectionCache;
+        this.templateEngine = templateEngine;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 获取评论区某一页的 HTML（优先使用缓存）
+     * @param bookId 书籍ID
+     * @param sort 主评论排序方式
+     * @param page 页码（从0开始）
+     * @return 评论区 HTML
+     */
+    public String render(Long bookId, CommentService.ThreadSort sort, int page) {
+        int safePage = Math.max(page, 0);
+        return commentSectionCache.get(bookId, sort.name() + ":" + safePage,
+                () -> readOnlyTransaction.execute(status -> renderSection(bookId, sort, safePage)));
+    }
+
+    /**
+     * 渲染某个评论串中游标之后的一批回复（有界查询，不缓存）
+     * @param bookId 书籍ID
+     * @param threadId 主评论ID
+     * @param after 游标，可为null
+     * @return 回复列表 HTML（含“查看更多回复”按钮）
+     */
+    public String renderReplies(Long bookId, Long threadId, String after) {
+        Slice<CommentNode> replies = readOnlyTransaction.execute(status ->
+                commentService.getReplies(bookId, threadId, after, CommentService.REPLY_PAGE_SIZE));
+        Context context = new Context(Locale.SIMPLIFIED_CHINESE);
+        context.setVariable("bookId", bookId);
+        context.setVariable("threadId", threadId);
+        context.setVariable("replies", replies);
+        return templateEngine.process(TEMPLATE, REPLIES, context);
+    }
+
+    private String renderSection(Long bookId, CommentService.ThreadSort sort, int page) {
+        Page<CommentNode> threads = commentService.getCommentThreads(bookId, sort, page,
+                CommentService.THREAD_PAGE_SIZE, CommentService.INLINE_REPLIES);
+        Context context = new Context(Locale.SIMPLIFIED_CHINESE);
+        context.setVariable("bookId", bookId);
+        context.setVariable("sort", sort.name().toLowerCase(Locale.ROOT));
+        context.setVariable("threads", threads);
+        return templateEngine.process(TEMPLATE, SECTION, context);
+    }
+}
@@ -1,11 +1,60 @@
 package com.example.qimo.service;
 
+import com.example.qimo.dto.CommentNode;
+import com.example.qimo.dto.LikeState;
 import com.example.qimo.entity.Comment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.access.AccessDeniedException;
 import javax.persistence.EntityNotFoundException;
 import java.util.List;
+import java.util.Set;
 
 public interface CommentService {
+
+    /**
+     * 每页主评论数
+     */
+    int THREAD_PAGE_SIZE = 10;
+
+    /**
+     * 每个评论串随主评论一起加载的回复数
+     */
+    int INLINE_REPLIES = 3;
+
+    /**
+     * “查看更多回复”每次加载的回复数
+     */
+    int REPLY_PAGE_SIZE = 20;
+
+    /**
+     * 主评论排序方式
+     */
+    enum ThreadSort {
+        NEWEST, OLDEST, TOP;
+
+        /**
+         * 解析排序参数，无法识别时返回 NEWEST
+         */
+        public static ThreadSort of(String value) {
+            if (value != null) {
+                for (ThreadSort sort : values()) {
+                    if (sort.name().equalsIgnoreCase(value)) return sort;
+                }
+            }
+            return NEWEST;
+        }
+    }
+
+    /**
+     * 发表评论的结果
+     */
+    enum AddResult {
+        /** 已写入，跳转后即可看到 */
+        ADDED,
+        /** 已进入写入队列但尚未提交，稍后可见，不应重复提交 */
+        PENDING
+    }
     
     /**
      * 根据评论ID切换点赞状态
@@ -14,6 +63,24 @@ public interface CommentService {
      * @throws EntityNotFoundException 当评论不存在时抛出
      */
     void toggleLike(Long commentId, String currentUsername);
+
+    /**
+     * 点赞（幂等，已点赞时不做修改）
+     * @param commentId 评论ID
+     * @param currentUsername 当前用户名
+     * @return 操作后的点赞状态
+     * @throws EntityNotFoundException 当评论不存在时抛出
+     */
+    LikeState like(Long commentId, String currentUsername);
+
+    /**
+     * 取消点赞（幂等，未点赞时不做修改）
+     * @param commentId 评论ID
+     * @param currentUsername 当前用户名
+     * @return 操作后的点赞状态
+     * @throws EntityNotFoundException 当评论不存在时抛出
+     */
+    LikeState unlike(Long commentId, String currentUsername);
     
     /**
      * 根据ID查找评论
@@ -31,20 +98,36 @@ public interface CommentService {
     List<Comment> getCommentsByBookId(Long bookId);
     
     /**
-     * 获取书籍的主评论及回复
+     * 分页获取主评论，每条主评论附带按路径顺序的前若干条回复（各级回复平铺，按 depth 缩进显示）
      * @param bookId 书籍ID
-     * @return 主评论列表（包含回复）
+     * @param sort 排序方式
+     * @param page 页码（从0开始）
+     * @param size 每页主评论数
+     * @param inlineReplies 每个评论串附带的回复数
+     * @return 主评论分页
      */
-    List<Comment> getCommentsWithRepliesByBookId(Long bookId);
-    
+    Page<CommentNode> getCommentThreads(Long bookId, ThreadSort sort, int page, int size, int inlineReplies);
+
+    /**
+     * 按游标继续加载某个评论串中的回复
+     * @param bookId 书籍ID
+     * @param threadId 评论串的主评论ID
+     * @param after 游标（已加载的最后一条回复的路径），为空时从头加载
+     * @param limit 加载数量
+     * @return 回复列表（按路径顺序）及是否还有更多
+     * @throws EntityNotFoundException 当评论不存在或不属于该书籍时抛出
+     */
+    Slice<CommentNode> getReplies(Long bookId, Long threadId, String after, int limit);
+
     /**
      * 添加评论或回复
      * @param bookId 书籍ID
      * @param content 评论内容
      * @param username 用户名
      * @param parentId 父评论ID（可为null，表示主评论）
+     * @return ADDED 表示已写入；PENDING 表示写入管道繁忙，评论已排队稍后写入
      */
-    void addComment(Long bookId, String content, String username, Long parentId);
+    AddResult addComment(Long bookId, String content, String username, Long parentId);
     
     /**
      * 删除评论
@@ -55,4 +138,12 @@ public interface CommentService {
      * @throws AccessDeniedException 当无权删除时抛出
      */
     void deleteCommentById(Long commentId, String currentUsername, boolean isAdmin);
-}
\ No newline at end of file
+
+    /**
+     * 查询用户在指定书籍下点赞过的评论ID（一次索引查询，页面按集合判断点赞状态）
+     * @param bookId 书籍ID
+     * @param username 用户名
+     * @return 评论ID集合
+     */
+    Set<Long> getLikedCommentIds(Long bookId, String username);
+}
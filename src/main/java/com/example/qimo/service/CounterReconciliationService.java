@@ -0,0 +1,108 @@
+package com.example.qimo.service;
+
+import com.example.qimo.cache.CommentSectionCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 冗余计数校对：按主键分段重新统计点赞数、回复数、评论数和收藏数，修正与关联表不一致的计数。
+ * 计数平时由各业务操作原子增减，这里只修正异常中断、手工改库等原因造成的偏差。已删除（墓碑）的评论不计入评论数和回复数。
+ * 每行的修正带上读取时的旧值作为条件（比较后更新），期间被业务操作改动过的行留到下一轮处理。
+ */
+@Service
+public class CounterReconciliationService {
+    private static final Logger logger = LoggerFactory.getLogger(CounterReconciliationService.class);
+
+    // 每段处理的主键范围，控制单条统计语句的扫描量
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String LIKE_MISMATCH = "SELECT c.id, c.book_id, c.like_count, COALESCE(x.n, 0) FROM comments c "
+            + "LEFT JOIN (SELECT comment_id, COUNT(*) n FROM comment_likes WHERE comment_id BETWEEN ? AND ? GROUP BY comment_id) x "
+            + "ON x.comment_id = c.id WHERE c.id BETWEEN ? AND ? AND c.like_count <> COALESCE(x.n, 0)";
+    private static final String REPLY_MISMATCH = "SELECT c.id, c.book_id, c.reply_count, COALESCE(x.n, 0) FROM comments c "
+            + "LEFT JOIN (SELECT parent_id, COUNT(*) n FROM comments WHERE parent_id BETWEEN ? AND ? AND deleted = false GROUP BY parent_id) x "
+            + "ON x.parent_id = c.id WHERE c.id BETWEEN ? AND ? AND c.reply_count <> COALESCE(x.n, 0)";
+    private static final String COMMENT_MISMATCH = "SELECT b.id, b.id, b.comment_count, COALESCE(x.n, 0) FROM books b "
+            + "LEFT JOIN (SELECT book_id, COUNT(*) n FROM comments WHERE book_id BETWEEN ? AND ? AND deleted = false GROUP BY book_id) x "
+            + "ON x.book_id = b.id WHERE b.id BETWEEN ? AND ? AND b.comment_count <> COALESCE(x.n, 0)";
+    private static final String FAVORITE_MISMATCH = "SELECT b.id, b.id, b.favorite_count, COALESCE(x.n, 0) FROM books b "
+            + "LEFT JOIN (SELECT book_id, COUNT(*) n FROM user_favorite_books WHERE book_id BETWEEN ? AND ? GROUP BY book_id) x "
+            + "ON x.book_id = b.id WHERE b.id BETWEEN ? AND ? AND b.favorite_count <> COALESCE(x.n, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CommentSectionCache commentSectionCache;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public CounterReconciliationService(JdbcTemplate jdbcTemplate, CommentSectionCache commentSectionCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.commentSectionCache = commentSectionCache;
+    }
+
+    /**
+     * 定时校对全部计数（默认每6小时一次；新增计数列后的首次回填由 DataInitRunner 完成）
+     */
+    @Scheduled(initialDelayString = "${qimo.counters.reconcile-interval-ms:21600000}",
+               fixedDelayString = "${qimo.counters.reconcile-interval-ms:21600000}")
+    public void scheduledReconcile() {
+        try {
+            reconcileAll();
+        } catch (Exception e) {
+            logger.error("计数校对失败", e);
+        }
+    }
+
+    /**
+     * 校对全部计数；已有校对在执行时直接返回
+     * @return 修正的行数
+     */
+    public int reconcileAll() {
+        if (!running.compareAndSet(false, true)) return 0;
+        try {
+            // 评论计数影响评论区渲染，书籍评论数随评论区版本号失效；收藏数已直接计入详情页 ETag
+            Set<Long> staleBooks = new HashSet<>();
+            int fixed = reconcile("comments", "like_count", LIKE_MISMATCH, staleBooks)
+                    + reconcile("comments", "reply_count", REPLY_MISMATCH, staleBooks)
+                    + reconcile("books", "comment_count", COMMENT_MISMATCH, staleBooks)
+                    + reconcile("books", "favorite_count", FAVORITE_MISMATCH, null);
+            staleBooks.forEach(commentSectionCache::bump);
+            if (fixed > 0) {
+                logger.info("计数校对完成，修正 {} 行", fixed);
+            }
+            return fixed;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int reconcile(String table, String column, String mismatchSql, Set<Long> staleBooks) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        if (maxId == null) return 0;
+        String update = "UPDATE " + table + " SET " + column + " = ? WHERE id = ? AND " + column + " = ?";
+        int fixed = 0;
+        for (long from = 1; from <= maxId; from += BATCH_SIZE) {
+            long to = from + BATCH_SIZE - 1;
+            List<long[]> rows = jdbcTemplate.query(mismatchSql,
+                    (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)},
+                    from, to, from, to);
+            for (long[] row : rows) {
+                // row: id, book_id, 当前计数, 实际数量
+                if (jdbcTemplate.update(update, row[3], row[0], row[2]) > 0) {
+                    fixed++;
+                    if (staleBooks != null) staleBooks.add(row[1]);
+                    logger.debug("{}.{} of {} corrected: {} -> {}", table, column, row[0], row[2], row[3]);
+                }
+            }
+        }
+        return fixed;
+    }
+}
@@ -4,6 +4,7 @@ import com.example.qimo.entity.User;
 import com.example.qimo.entity.Book;
 import com.example.qimo.repository.UserRepository;
 import com.example.qimo.repository.BookRepository;
+import com.example.qimo.support.TransactionHooks;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,11 +14,13 @@ public class FavoriteService {
     
     private final UserRepository userRepository;
     private final BookRepository bookRepository;
+    private final TrendingService trendingService;
     
     @Autowired
-    public FavoriteService(UserRepository userRepository, BookRepository bookRepository) {
+    public FavoriteService(UserRepository userRepository, BookRepository bookRepository, TrendingService trendingService) {
         this.userRepository = userRepository;
         this.bookRepository = bookRepository;
+        this.trendingService = trendingService;
     }
     
     // 检查用户是否已收藏指定书籍（根据用户ID和书籍ID）
@@ -38,8 +41,12 @@ public class FavoriteService {
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(() -> new IllegalArgumentException("书籍不存在"));
         
-        user.getFavoriteBooks().add(book);
-        userRepository.save(user);
+        // 只有收藏关系实际变化时才更新收藏计数
+        if (user.getFavoriteBooks().add(book)) {
+            userRepository.saveAndFlush(user);
+            bookRepository.adjustFavoriteCount(bookId, 1);
+            TransactionHooks.afterCommit(() -> trendingService.record(bookId, TrendingService.Signal.FAVORITE));
+        }
     }
     
     // 从收藏中移除书籍
@@ -50,7 +57,9 @@ public class FavoriteService {
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(() -> new IllegalArgumentException("书籍不存在"));
         
-        user.getFavoriteBooks().remove(book);
-        userRepository.save(user);
+        if (user.getFavoriteBooks().remove(book)) {
+            userRepository.saveAndFlush(user);
+            bookRepository.adjustFavoriteCount(bookId, -1);
+        }
     }
 }
\ No newline at end of file
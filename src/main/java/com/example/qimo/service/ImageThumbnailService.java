@@ -0,0 +1,353 @@
+package com.example.qimo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 封面缩略图：按固定尺寸（列表卡片、详情页）生成 JPEG 缩略图并保存在本地目录，
+ * 由 {@code ThumbnailController} 以 /thumbs/** 提供访问。
+ * 缩略图只在管理员保存书籍时于有界线程池中异步生成，批量导入的书籍由单独的补齐线程在导入结束后逐批生成；
+ * 页面渲染只检查文件是否存在，不会触发下载，尚未生成时页面使用原图地址。远程原图只从 qimo.images.remote-hosts 列出的主机下载，不跟随重定向，
+ * 解析到内网、回环等地址的主机也会被拒绝。
+ */
+@Service
+public class ImageThumbnailService {
+    private static final Logger logger = LoggerFactory.getLogger(ImageThumbnailService.class);
+
+    /**
+     * 缩略图规格（裁剪为固定宽高）
+     */
+    public enum Variant {
+        CARD(300, 400),
+        DETAIL(600, 800);
+
+        private final int width;
+        private final int height;
+
+        Variant(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public String suffix() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // 原图大小上限
+    private static final int MAX_SOURCE_BYTES = 10 * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 10000;
+    // 待处理任务上限，队列满时放弃（再次保存书籍时重新提交）
+    private static final int QUEUE_CAPACITY = 256;
+    // 排队的补齐任务上限（每次导入一个）
+    private static final int BACKFILL_QUEUE_CAPACITY = 16;
+
+    private final Path thumbDir;
+    private final ThreadPoolExecutor executor;
+    // 导入后补齐缩略图的单线程，不占用保存书籍时使用的线程池
+    private final ThreadPoolExecutor backfillExecutor;
+    // 允许下载原图的远程主机（小写）
+    private final Set<String> remoteHosts;
+    // 正在排队或生成中的缩略图文件名，避免重复提交
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public ImageThumbnailService(@Value("${qimo.images.dir:./data/images}") String imageDir,
+                                 @Value("${qimo.images.thumbnail-threads:2}") int threads,
+                                 @Value("${qimo.images.remote-hosts:}") String remoteHosts) throws IOException {
+        this.thumbDir = Paths.get(imageDir, "thumbs").toAbsolutePath().normalize();
+        this.remoteHosts = Arrays.stream(remoteHosts.split(","))
+                .map(h -> h.trim().toLowerCase(Locale.ROOT))
+                .filter(h -> !h.isEmpty())
+                .collect(Collectors.toSet());
+        Files.createDirectories(thumbDir);
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread t = new Thread(r, "thumbnail-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.backfillExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(BACKFILL_QUEUE_CAPACITY), r -> {
+                    Thread t = new Thread(r, "thumbnail-backfill");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+        this.backfillExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 页面中使用的图片地址：缩略图已生成时返回 /thumbs 地址（带该图片自己的版本参数，可长期缓存），
+     * 否则返回原图地址。只检查本地文件，不提交生成任务
+     * @param source 原图地址（http/https 或 /images/** 等站内静态路径），可为null
+     * @param variant 规格名称（card / detail）
+     * @param fallback source 为空时使用的地址
+     */
+    public String url(String source, String variant, String fallback) {
+        if (source == null || source.trim().isEmpty()) return fallback;
+        Variant v = Variant.valueOf(variant.toUpperCase(Locale.ROOT));
+        String name = fileName(source.trim(), v);
+        Path file = thumbDir.resolve(name);
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            return "/thumbs/" + name + "?v=" + Long.toString(modified, 36);
+        } catch (IOException e) {
+            return source;
+        }
+    }
+
+    /**
+     * 为原图提交指定规格的缩略图生成任务（已存在的规格会被重新生成），只在管理员保存书籍时调用
+     * @param onGenerated 每生成一张缩略图后在生成线程中调用（用于使引用该图片的页面缓存失效），可为null
+     */
+    public void generate(String source, Runnable onGenerated, Variant... variants) {
+        if (source == null || source.trim().isEmpty()) return;
+        for (Variant v : variants) {
+            submit(source.trim(), v, onGenerated);
+        }
+    }
+
+    /**
+     * 提交补齐任务，任务在补齐线程中依次调用 {@link #generateMissing} 生成缩略图
+     */
+    public void backfill(Runnable task) {
+        try {
+            backfillExecutor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.warn("补齐缩略图失败: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("缩略图补齐队列已满，跳过本次补齐");
+        }
+    }
+
+    /**
+     * 在当前线程中生成原图缺少的缩略图规格（已存在或正在生成的跳过），供补齐任务调用
+     * @return 是否生成了至少一张缩略图
+     */
+    public boolean generateMissing(String source, Variant... variants) {
+        if (source == null || source.trim().isEmpty()) return false;
+        String trimmed = source.trim();
+        boolean generated = false;
+        for (Variant v : variants) {
+            String name = fileName(trimmed, v);
+            Path target = thumbDir.resolve(name);
+            if (Files.exists(target) || !pending.add(name)) continue;
+            try {
+                createThumbnail(trimmed, v, target);
+                generated = true;
+            } catch (Exception e) {
+                logger.warn("生成缩略图失败: source={}, variant={}, error={}", trimmed, v, e.getMessage());
+            } finally {
+                pending.remove(name);
+            }
+        }
+        return generated;
+    }
+
+    /**
+     * 解析 /thumbs/{name} 对应的文件
+     * @return 文件路径；文件名不合法时返回null
+     */
+    public Path resolve(String name) {
+        if (name == null || !name.matches("[0-9a-f]{32}-(card|detail)\\.jpg")) return null;
+        return thumbDir.resolve(name);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        backfillExecutor.shutdownNow();
+    }
+
+    private void submit(String source, Variant variant, Runnable onGenerated) {
+        String name = fileName(source, variant);
+        if (!pending.add(name)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    createThumbnail(source, variant, thumbDir.resolve(name));
+                    if (onGenerated != null) onGenerated.run();
+                } catch (Exception e) {
+                    logger.warn("生成缩略图失败: source={}, variant={}, error={}", source, variant, e.getMessage());
+                } finally {
+                    pending.remove(name);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 队列已满或正在关闭：放弃本次生成，页面继续使用原图，再次保存书籍时重新提交
+            logger.warn("缩略图生成队列已满，跳过: source={}, variant={}", source, variant);
+            pending.remove(name);
+        }
+    }
+
+    private void createThumbnail(String source, Variant variant, Path target) throws IOException {
+        BufferedImage original;
+        try (InputStream in = openSource(source)) {
+            original = ImageIO.read(in);
+        }
+        if (original == null) {
+            throw new IOException("不支持的图片格式");
+        }
+        BufferedImage thumb = scaleAndCrop(original, variant.getWidth(), variant.getHeight());
+        // 先写临时文件再原子替换，读取方不会看到写了一半的文件
+        Path temp = Files.createTempFile(thumbDir, "thumb-", ".tmp");
+        try {
+            if (!ImageIO.write(thumb, "jpg", temp.toFile())) {
+                throw new IOException("无法写出 JPEG");
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        logger.debug("缩略图已生成: {} -> {}", source, target.getFileName());
+    }
+
+    /**
+     * 按比例缩放后居中裁剪为目标尺寸
+     */
+    private static BufferedImage scaleAndCrop(BufferedImage src, int width, int height) {
+        double scale = Math.max((double) width / src.getWidth(), (double) height / src.getHeight());
+        int scaledW = (int) Math.ceil(src.getWidth() * scale);
+        int scaledH = (int) Math.ceil(src.getHeight() * scale);
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            // 透明背景填充为白色
+            g.setColor(java.awt.Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(src, (width - scaledW) / 2, (height - scaledH) / 2, scaledW, scaledH, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    /**
+     * 打开原图：允许的远程主机上的 http/https 地址下载（限制大小），站内路径从 classpath:/static 读取
+     */
+    private InputStream openSource(String source) throws IOException {
+        String lower = source.toLowerCase(Locale.ROOT);
+        if (lower.startsWith("http://") || lower.startsWith("https://")) {
+            URL url = new URL(source);
+            checkRemoteHost(url.getHost());
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setInstanceFollowRedirects(false);
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            try {
+                if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("下载原图失败，HTTP " + conn.getResponseCode());
+                }
+                try (InputStream in = conn.getInputStream()) {
+                    return new ByteArrayInputStream(readLimited(in));
+                }
+            } finally {
+                conn.disconnect();
+            }
+        }
+        if (lower.contains(":")) {
+            throw new IOException("不支持的图片地址");
+        }
+        String path = source.startsWith("/") ? source.substring(1) : source;
+        if (path.contains("..")) {
+            throw new IOException("非法的图片路径");
+        }
+        return new ClassPathResource("static/" + path).getInputStream();
+    }
+
+    /**
+     * 只允许配置的主机，且主机不能解析到回环、内网、链路本地等地址
+     */
+    private void checkRemoteHost(String host) throws IOException {
+        if (host == null || !remoteHosts.contains(host.toLowerCase(Locale.ROOT))) {
+            throw new IOException("不允许从该主机下载图片: " + host);
+        }
+        for (InetAddress address : InetAddress.getAllByName(host)) {
+            if (address.isLoopbackAddress() || address.isSiteLocalAddress() || address.isLinkLocalAddress()
+                    || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+                throw new IOException("图片主机解析到内部地址: " + host);
+            }
+        }
+    }
+
+    private static byte[] readLimited(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            if (out.size() + n > MAX_SOURCE_BYTES) {
+                throw new IOException("图片超过大小限制");
+            }
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 缩略图文件名：原图地址的摘要 + 规格
+     */
+    private static String fileName(String source, Variant variant) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(40);
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.append('-').append(variant.suffix()).append(".jpg").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.qimo.service;
+
+import com.example.qimo.entity.Rating;
+import com.example.qimo.entity.User;
+import com.example.qimo.repository.BookRepository;
+import com.example.qimo.repository.RatingRepository;
+import com.example.qimo.repository.UserRepository;
+import com.example.qimo.support.TransactionHooks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityNotFoundException;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 书籍评分：每个用户对每本书最多一条 1-5 分的评分，可修改、可删除。
+ * 评分数、总分、各分值人数和平均分保存在 books 表中，每次评分变化时在同一事务内按新旧分值增量更新，
+ * 读取时不需要对 ratings 表做聚合。同一本书的评分修改先锁定书籍行再依次执行。
+ */
+@Service
+public class RatingService {
+
+    private final RatingRepository ratingRepository;
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    // 评分变化的次数，计入列表页的 ETag（列表卡片显示平均分）；详情页按书籍的修改时间判断
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastModified = System.currentTimeMillis();
+
+    @Autowired
+    public RatingService(RatingRepository ratingRepository, BookRepository bookRepository, UserRepository userRepository) {
+        this.ratingRepository = ratingRepository;
+        this.bookRepository = bookRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * 评分或修改评分
+     * @param bookId 书籍ID
+     * @param username 用户名
+     * @param score 分值（1-5）
+     */
+    @Transactional
+    public void rate(Long bookId, String username, int score) {
+        if (score < Rating.MIN_SCORE || score > Rating.MAX_SCORE) {
+            throw new IllegalArgumentException("评分必须在" + Rating.MIN_SCORE + "到" + Rating.MAX_SCORE + "之间");
+        }
+        User user = findUser(username);
+        lockBook(bookId);
+        int oldScore = ratingRepository.findScore(user.getId(), bookId).orElse(0);
+        if (oldScore == score) return;
+        ratingRepository.upsert(user.getId(), bookId, score);
+        bookRepository.applyRatingChange(bookId, oldScore, score, LocalDateTime.now());
+        TransactionHooks.afterCommit(this::bump);
+    }
+
+    /**
+     * 删除当前用户对书籍的评分，没有评分时不做任何操作
+     */
+    @Transactional
+    public void removeRating(Long bookId, String username) {
+        User user = findUser(username);
+        lockBook(bookId);
+        Optional<Integer> oldScore = ratingRepository.findScore(user.getId(), bookId);
+        if (!oldScore.isPresent()) return;
+        ratingRepository.deleteByUserIdAndBookId(user.getId(), bookId);
+        bookRepository.applyRatingChange(bookId, oldScore.get(), 0, LocalDateTime.now());
+        TransactionHooks.afterCommit(this::bump);
+    }
+
+    /**
+     * @return 用户对书籍的评分，未评分时为空
+     */
+    @Transactional(readOnly = true)
+    public Optional<Integer> getUserRating(Long bookId, String username) {
+        return userRepository.findByUsername(username)
+                .flatMap(user -> ratingRepository.findScore(user.getId(), bookId));
+    }
+
+    /**
+     * @return 评分版本号，任何评分变化后递增
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * @return 最近一次评分变化的时间（毫秒时间戳）
+     */
+    public long lastModified() {
+        return lastModified;
+    }
+
+    private void bump() {
+        lastModified = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+
+    private User findUser(String username) {
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("用户不存在"));
+    }
+
+    private void lockBook(Long bookId) {
+        // 先锁定书籍行：同一本书的评分依次写入，避免并发的首次评分在唯一索引上互相等待造成死锁
+        bookRepository.lockById(bookId)
+                .orElseThrow(() -> new EntityNotFoundException("书籍不存在: " + bookId));
+    }
+}
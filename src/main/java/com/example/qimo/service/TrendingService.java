@@ -0,0 +1,241 @@
+package com.example.qimo.service;
+
+import com.example.qimo.cache.CatalogVersion;
+import com.example.qimo.dto.BookCard;
+import com.example.qimo.index.BookTrendingIndex;
+import com.example.qimo.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 热门书籍：把浏览、点赞、评论、收藏记入 {@link BookTrendingIndex}，并定期把分数写入 book_trending 检查点，
+ * 重启后从检查点恢复。页面展示的排行每隔 refresh-ms 刷新一次，期间复用已查询的书籍卡片，
+ * 列表页的 ETag 也按刷新批次变化，而不是随每次浏览变化。
+ * 取消点赞、取消收藏、删除评论不扣减分数；同一访问者在 view-dedup-ms 内重复浏览同一本书只计一次。
+ */
+@Service
+public class TrendingService {
+    private static final Logger logger = LoggerFactory.getLogger(TrendingService.class);
+
+    /**
+     * 热度事件及其权重
+     */
+    public enum Signal {
+        VIEW(1), LIKE(2), COMMENT(3), FAVORITE(5);
+
+        private final double weight;
+
+        Signal(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    // 浏览去重最多记录的（访问者, 书籍）数，超出时淘汰最早的记录
+    private static final int MAX_RECENT_VIEWS = 100_000;
+
+    private static final String UPSERT_SQL = "INSERT INTO book_trending (book_id, score, scored_at) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE score = VALUES(score), scored_at = VALUES(scored_at)";
+
+    private final BookTrendingIndex trendingIndex;
+    private final BookRepository bookRepository;
+    private final CatalogVersion catalogVersion;
+    private final JdbcTemplate jdbcTemplate;
+    private final long viewDedupMs;
+    // 访问者|书籍ID -> 最近一次计入浏览的时间，按插入顺序淘汰
+    private final Map<String, Long> recentViews = new LinkedHashMap<String, Long>(1024, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_RECENT_VIEWS;
+        }
+    };
+    // 范围（0 为全站，否则为分类ID） -> 当前刷新批次的书籍卡片
+    private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private volatile long generation;
+    private volatile long lastModified = System.currentTimeMillis();
+    private long seenVersion = -1;
+    // 检查点恢复完成前不写检查点，避免覆盖尚未载入的分数
+    private volatile boolean restored;
+
+    @Autowired
+    public TrendingService(BookTrendingIndex trendingIndex, BookRepository bookRepository,
+                           CatalogVersion catalogVersion, JdbcTemplate jdbcTemplate,
+                           @Value("${qimo.trending.view-dedup-ms:1800000}") long viewDedupMs) {
+        this.trendingIndex = trendingIndex;
+        this.bookRepository = bookRepository;
+        this.catalogVersion = catalogVersion;
+        this.jdbcTemplate = jdbcTemplate;
+        this.viewDedupMs = viewDedupMs;
+    }
+
+    /**
+     * 记录一次热度事件（写操作应在事务提交后调用）
+     */
+    public void record(Long bookId, Signal signal) {
+        if (bookId == null) return;
+        trendingIndex.add(bookId, signal.weight, System.currentTimeMillis());
+    }
+
+    /**
+     * 记录一次浏览（只在完整渲染详情页时调用），同一访问者在去重窗口内重复浏览不再计数
+     * @param bookId 书籍ID
+     * @param viewer 访问者标识（登录用户名或客户端地址）
+     */
+    public void recordView(Long bookId, String viewer) {
+        if (bookId == null) return;
+        long now = System.currentTimeMillis();
+        String key = viewer + '|' + bookId;
+        synchronized (recentViews) {
+            Long last = recentViews.get(key);
+            if (last != null && now - last < viewDedupMs) return;
+            // 重新插入到末尾，淘汰顺序与计数时间一致
+            recentViews.remove(key);
+            recentViews.put(key, now);
+        }
+        trendingIndex.add(bookId, Signal.VIEW.weight, now);
+    }
+
+    /**
+     * 热门书籍，按热度从高到低
+     * @param categoryId 分类ID，为null时为全站排行
+     * @param limit 数量
+     */
+    public List<BookCard> getTrendingBooks(Long categoryId, int limit) {
+        long scope = categoryId != null ? categoryId : 0L;
+        long gen = generation;
+        long catalog = catalogVersion.current();
+        Snapshot snapshot = snapshots.get(scope);
+        if (snapshot == null || snapshot.generation != gen || snapshot.catalogVersion != catalog || snapshot.limit < limit) {
+            snapshot = new Snapshot(gen, catalog, limit, loadCards(trendingIndex.top(categoryId, limit)));
+            snapshots.put(scope, snapshot);
+        }
+        return snapshot.books.size() > limit ? snapshot.books.subList(0, limit) : snapshot.books;
+    }
+
+    /**
+     * @return 排行的刷新批次，用于页面的 ETag
+     */
+    public long version() {
+        return generation;
+    }
+
+    /**
+     * @return 最近一次排行变化的时间（毫秒时间戳）
+     */
+    public long lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * 排行有变化时开始新的刷新批次
+     */
+    @Scheduled(fixedDelayString = "${qimo.trending.refresh-ms:60000}")
+    public synchronized void refresh() {
+        long version = trendingIndex.version();
+        if (version != seenVersion) {
+            seenVersion = version;
+            lastModified = System.currentTimeMillis();
+            generation++;
+        }
+    }
+
+    /**
+     * 从检查点恢复分数（启动时在书籍索引预热之后调用）
+     */
+    public void restore() {
+        int[] loaded = {0};
+        jdbcTemplate.query("SELECT t.book_id, t.score, t.scored_at FROM book_trending t JOIN books b ON b.id = t.book_id",
+                rs -> {
+                    trendingIndex.restore(rs.getLong(1), rs.getDouble(2), rs.getLong(3));
+                    loaded[0]++;
+                });
+        restored = true;
+        refresh();
+        logger.info("Trending scores restored: {} books", loaded[0]);
+    }
+
+    @Scheduled(initialDelayString = "${qimo.trending.checkpoint-interval-ms:300000}",
+               fixedDelayString = "${qimo.trending.checkpoint-interval-ms:300000}")
+    public void scheduledCheckpoint() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            logger.error("写入热门书籍检查点失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            logger.error("关闭时写入热门书籍检查点失败", e);
+        }
+    }
+
+    /**
+     * 把上次检查点之后变化过的分数写入数据库
+     * @return 写入的行数
+     */
+    public synchronized int checkpoint() {
+        if (!restored) return 0;
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = trendingIndex.takeDirty(now);
+        if (rows.isEmpty()) return 0;
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            args.add(new Object[]{row[0], row[1], now});
+        }
+        try {
+            for (int from = 0; from < args.size(); from += 500) {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, args.subList(from, Math.min(from + 500, args.size())));
+            }
+            // 已删除书籍的分数
+            jdbcTemplate.update("DELETE t FROM book_trending t LEFT JOIN books b ON b.id = t.book_id WHERE b.id IS NULL");
+        } catch (RuntimeException e) {
+            trendingIndex.markDirty(rows.stream().map(row -> (Long) row[0]).collect(Collectors.toList()));
+            throw e;
+        }
+        return rows.size();
+    }
+
+    private List<BookCard> loadCards(List<Long> ids) {
+        if (ids.isEmpty()) return Collections.emptyList();
+        Map<Long, BookCard> byId = bookRepository.findCardsByIdIn(ids).stream()
+                .collect(Collectors.toMap(BookCard::getId, Function.identity()));
+        List<BookCard> books = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            BookCard card = byId.get(id);
+            if (card != null) books.add(card);
+        }
+        return Collections.unmodifiableList(books);
+    }
+
+    private static final class Snapshot {
+        final long generation;
+        final long catalogVersion;
+        final int limit;
+        final List<BookCard> books;
+
+        Snapshot(long generation, long catalogVersion, int limit, List<BookCard> books) {
+            this.generation = generation;
+            this.catalogVersion = catalogVersion;
+            this.limit = limit;
+            this.books = books;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.example.qimo.service;
 
 import com.example.qimo.entity.User;
+import com.example.qimo.dto.BookCard;
 import com.example.qimo.entity.Book;
 import com.example.qimo.repository.UserRepository;
 import com.example.qimo.repository.BookRepository;
+import com.example.qimo.support.TransactionHooks;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -23,12 +25,15 @@ public class UserService implements UserDetailsService {
     private final UserRepository userRepository;
     private final BookRepository bookRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TrendingService trendingService;
 
     @Autowired
-    public UserService(UserRepository userRepository, BookRepository bookRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, BookRepository bookRepository, PasswordEncoder passwordEncoder,
+                       TrendingService trendingService) {
         this.userRepository = userRepository;
         this.bookRepository = bookRepository;
         this.passwordEncoder = passwordEncoder;
+        this.trendingService = trendingService;
     }
 
     public void register(User user, String rawPassword) {
@@ -93,8 +98,8 @@ public class UserService implements UserDetailsService {
     }
     
     // 获取用户收藏的书籍列表（分页）
-    @Transactional
-    public Page<Book> getFavoriteBooks(String username, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public Page<BookCard> getFavoriteBooks(String username, Pageable pageable) {
         return userRepository.findFavoriteBooksByUsername(username, pageable);
     }
     
@@ -105,8 +110,12 @@ public class UserService implements UserDetailsService {
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(() -> new IllegalArgumentException("书籍不存在"));
         
-        user.getFavoriteBooks().add(book);
-        userRepository.save(user);
+        // 只有收藏关系实际变化时才更新收藏计数
+        if (user.getFavoriteBooks().add(book)) {
+            userRepository.saveAndFlush(user);
+            bookRepository.adjustFavoriteCount(bookId, 1);
+            TransactionHooks.afterCommit(() -> trendingService.record(bookId, TrendingService.Signal.FAVORITE));
+        }
     }
     
     // 从收藏中移除书籍
@@ -116,8 +125,10 @@ public class UserService implements UserDetailsService {
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(() -> new IllegalArgumentException("书籍不存在"));
         
-        user.getFavoriteBooks().remove(book);
-        userRepository.save(user);
+        if (user.getFavoriteBooks().remove(book)) {
+            userRepository.saveAndFlush(user);
+            bookRepository.adjustFavoriteCount(bookId, -1);
+        }
     }
 
     @Override
@@ -1,122 +1,177 @@
 package com.example.qimo.service.impl;
 
+import com.example.qimo.cache.BookCountCache;
+import com.example.qimo.cache.CatalogVersion;
+import com.example.qimo.cache.CategoryDictionary;
+import com.example.qimo.dto.BookCard;
+import com.example.qimo.dto.BookFacetFilter;
+import com.example.qimo.dto.FacetCounts;
+import com.example.qimo.dto.FacetValue;
+import com.example.qimo.dto.BookCursor;
+import com.example.qimo.dto.CursorPage;
 import com.example.qimo.entity.Book;
 import com.example.qimo.entity.Category;
+import com.example.qimo.index.BookFacetIndex;
+import com.example.qimo.index.BookIndexRegistry;
+import com.example.qimo.index.BookIsbnIndex;
+import com.example.qimo.index.BookSearchIndex;
 import com.example.qimo.repository.BookRepository;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
+import com.example.qimo.support.Isbn;
+import com.example.qimo.support.TransactionHooks;
 import org.springframework.data.domain.PageImpl;
 import com.example.qimo.service.BookService;
 import com.example.qimo.service.CategoryService;
+import com.example.qimo.service.ImageThumbnailService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.LongSupplier;
 
 @Service
 public class BookServiceImpl implements BookService {
 
     private final BookRepository bookRepository;
     private final CategoryService categoryService;
-    private final JdbcTemplate jdbcTemplate;
+    private final CategoryDictionary categoryDictionary;
+    private final BookIndexRegistry bookIndexRegistry;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookFacetIndex bookFacetIndex;
+    private final BookIsbnIndex bookIsbnIndex;
+    private final CatalogVersion catalogVersion;
+    private final BookCountCache bookCountCache;
+    private final ImageThumbnailService imageThumbnailService;
+
+    // 补齐缩略图时每批处理的书籍数，每批只更新一次目录版本号
+    private static final int THUMBNAIL_BACKFILL_BATCH = 500;
+
+    // 分页总数的获取方式：cached = 按目录版本缓存 COUNT 结果；slice = 不计数，只判断是否有下一页
+    @Value("${qimo.books.count-mode:cached}")
+    private String countMode = "cached";
 
     @Autowired
-    public BookServiceImpl(BookRepository bookRepository, CategoryService categoryService, JdbcTemplate jdbcTemplate) {
+    public BookServiceImpl(BookRepository bookRepository, CategoryService categoryService, CategoryDictionary categoryDictionary,
+                           BookIndexRegistry bookIndexRegistry, BookSearchIndex bookSearchIndex, BookFacetIndex bookFacetIndex,
+                           BookIsbnIndex bookIsbnIndex, CatalogVersion catalogVersion, BookCountCache bookCountCache,
+                           ImageThumbnailService imageThumbnailService) {
         this.bookRepository = bookRepository;
         this.categoryService = categoryService;
-        this.jdbcTemplate = jdbcTemplate;
+        this.categoryDictionary = categoryDictionary;
+        this.bookIndexRegistry = bookIndexRegistry;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookFacetIndex = bookFacetIndex;
+        this.bookIsbnIndex = bookIsbnIndex;
+        this.catalogVersion = catalogVersion;
+        this.bookCountCache = bookCountCache;
+        this.imageThumbnailService = imageThumbnailService;
     }
 
     @Override
     public List<Book> getAllBooks() {
-        return bookRepository.findAll();
-    }
-
-    @Override
-    public Page<Book> getBooks(Pageable pageable) {
-        try {
-            return bookRepository.findAll(pageable);
-        } catch (org.springframework.orm.jpa.JpaObjectRetrievalFailureException ex) {
-            // 如果存在因category引用缺失导致的读取错误，使用原生SQL降级读取（不尝试装载Category实体）
-            long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books", Long.class);
-            int pageSize = pageable.getPageSize();
-            int pageNumber = pageable.getPageNumber();
-            int offset = pageNumber * pageSize;
-            String sql = "SELECT id, title, author, isbn, publisher, description, cover_image, year, created_at, updated_at FROM books ORDER BY id DESC LIMIT ? OFFSET ?";
-            RowMapper<Book> mapper = (rs, rowNum) -> {
-                Book b = new Book();
-                b.setId(rs.getLong("id"));
-                b.setTitle(rs.getString("title"));
-                b.setAuthor(rs.getString("author"));
-                b.setIsbn(rs.getString("isbn"));
-                b.setPublisher(rs.getString("publisher"));
-                b.setDescription(rs.getString("description"));
-                b.setCoverImage(rs.getString("cover_image"));
-                int year = rs.getInt("year");
-                if (!rs.wasNull()) b.setYear(year);
-                b.setCreatedAt(rs.getTimestamp("created_at") == null ? null : rs.getTimestamp("created_at").toLocalDateTime());
-                b.setUpdatedAt(rs.getTimestamp("updated_at") == null ? null : rs.getTimestamp("updated_at").toLocalDateTime());
-                // 不装载 category，保持为 null
-                b.setCategory(null);
-                return b;
-            };
-            java.util.List<Book> rows = jdbcTemplate.query(sql, new Object[]{pageSize, offset}, mapper);
-            return new PageImpl<>(rows, pageable, total);
+        List<Book> books = bookRepository.findAll();
+        books.forEach(this::attachCategory);
+        return books;
+    }
+
+    @Override
+    public Page<BookCard> getBooks(Pageable pageable) {
+        // 卡片投影只读取 books 表本身，不会因 category 引用缺失而加载失败
+        return toPage(bookRepository.findCardsBy(pageable), null, bookRepository::count);
+    }
+
+    @Override
+    public CursorPage<BookCard> getBooksByCursor(Long categoryId, String after, String before, int size) {
+        BookCursor afterCursor = BookCursor.decode(after);
+        BookCursor beforeCursor = afterCursor == null ? BookCursor.decode(before) : null;
+        // 多取一条用于判断是否还有下一页
+        Pageable limit = PageRequest.of(0, size + 1);
+
+        List<BookCard> rows;
+        if (afterCursor != null) {
+            rows = bookRepository.findKeysetAfter(categoryId, afterCursor.getCreatedAt(), afterCursor.getId(), limit);
+        } else if (beforeCursor != null) {
+            rows = bookRepository.findKeysetBefore(categoryId, beforeCursor.getCreatedAt(), beforeCursor.getId(), limit);
+        } else {
+            rows = bookRepository.findKeysetFirst(categoryId, limit);
         }
+        rows = new ArrayList<>(rows);
+
+        boolean hasMore = rows.size() > size;
+        if (hasMore) rows.remove(rows.size() - 1);
+        boolean hasNext;
+        boolean hasPrevious;
+        if (beforeCursor != null) {
+            // 向前翻页时按正序查询，需要反转回倒序展示
+            Collections.reverse(rows);
+            hasPrevious = hasMore;
+            hasNext = true;
+        } else {
+            hasNext = hasMore;
+            hasPrevious = afterCursor != null;
+        }
+
+        String next = hasNext && !rows.isEmpty() ? cursorOf(rows.get(rows.size() - 1)) : null;
+        String prev = hasPrevious && !rows.isEmpty() ? cursorOf(rows.get(0)) : null;
+        return new CursorPage<>(rows, size, next, prev);
+    }
+
+    private static String cursorOf(BookCard book) {
+        return BookCursor.of(book.getCreatedAt(), book.getId());
     }
 
     @Override
     public Optional<Book> getBookById(Long id) {
-        try {
-            Optional<Book> opt = bookRepository.findById(id);
-            if (opt.isPresent()) {
-                Book b = opt.get();
-                // 防御性加载category，避免因找不到category实体导致页面渲染时抛出异常
-                try {
-                    if (b.getCategory() != null) {
-                        b.getCategory().getName(); // 尝试访问以触发懒加载
-                    }
-                } catch (RuntimeException inner) {
-                    // 出现加载异常（例如EntityNotFound），将category置空以保证渲染安全
-                    b.setCategory(null);
-                }
-                return Optional.of(b);
-            }
-            return Optional.empty();
-        } catch (org.springframework.orm.jpa.JpaObjectRetrievalFailureException ex) {
-            // 降级到原生查询，确保Book能被读取（不依赖Category表）
-            String sql = "SELECT id, title, author, isbn, publisher, description, cover_image, year, created_at, updated_at FROM books WHERE id = ?";
-            try {
-                Book b = jdbcTemplate.queryForObject(sql, new Object[]{id}, (rs, rowNum) -> {
-                    Book book = new Book();
-                    book.setId(rs.getLong("id"));
-                    book.setTitle(rs.getString("title"));
-                    book.setAuthor(rs.getString("author"));
-                    book.setIsbn(rs.getString("isbn"));
-                    book.setPublisher(rs.getString("publisher"));
-                    book.setDescription(rs.getString("description"));
-                    book.setCoverImage(rs.getString("cover_image"));
-                    int year = rs.getInt("year");
-                    if (!rs.wasNull()) book.setYear(year);
-                    book.setCreatedAt(rs.getTimestamp("created_at") == null ? null : rs.getTimestamp("created_at").toLocalDateTime());
-                    book.setUpdatedAt(rs.getTimestamp("updated_at") == null ? null : rs.getTimestamp("updated_at").toLocalDateTime());
-                    book.setCategory(null);
-                    return book;
-                });
-                return Optional.ofNullable(b);
-            } catch (Exception e) {
-                return Optional.empty();
-            }
+        return bookRepository.findById(id).map(this::attachCategory);
+    }
+
+    @Override
+    public Optional<LocalDateTime> getBookLastModified(Long id) {
+        return bookRepository.findLastModifiedById(id);
+    }
+
+    @Override
+    public int getFavoriteCount(Long id) {
+        return bookRepository.findFavoriteCountById(id).orElse(0);
+    }
+
+    /**
+     * 从分类字典解析书籍的分类；分类已不存在时保持为null，不修改 categoryId
+     */
+    private Book attachCategory(Book book) {
+        Category category = categoryDictionary.get(book.getCategoryId());
+        if (category != null) {
+            book.setCategory(category);
         }
+        return book;
     }
 
     @Override
     @Transactional
     public Book saveBook(Book book, Long categoryId) {
+        // ISBN 统一保存为规范写法，重复检查和唯一索引才能识别同一本书的不同写法
+        if (book.getIsbn() != null) {
+            String isbn = book.getIsbn().trim();
+            if (isbn.isEmpty()) {
+                book.setIsbn(null);
+            } else {
+                String canonical = Isbn.canonical(isbn);
+                if (canonical == null) throw new IllegalArgumentException("ISBN 格式错误: " + isbn);
+                book.setIsbn(canonical);
+            }
+        }
         // 只有当categoryId有效（不为null且大于0）时，才尝试获取和设置分类
         if (categoryId != null && categoryId > 0) {
             try {
@@ -131,56 +186,224 @@ public class BookServiceImpl implements BookService {
             // 如果categoryId无效，设置category为null
             book.setCategory(null);
         }
-        return bookRepository.save(book);
+        Book saved = attachCategory(bookRepository.save(book));
+        // 事务提交后再更新内存索引和目录版本号，避免回滚导致索引与数据库不一致
+        TransactionHooks.afterCommit(() -> {
+            bookIndexRegistry.onSaved(saved);
+            catalogVersion.bump();
+            generateCoverThumbnails(saved.getId(), saved.getCoverImage());
+        });
+        return saved;
+    }
+
+    @Override
+    public void generateCoverThumbnails(Long bookId, String coverImage) {
+        // 缩略图生成后页面改用缩略图地址：更新该书的修改时间（详情页）和目录版本号（列表页）
+        imageThumbnailService.generate(coverImage, () -> {
+            bookRepository.touch(bookId, LocalDateTime.now());
+            catalogVersion.bump();
+        }, ImageThumbnailService.Variant.CARD, ImageThumbnailService.Variant.DETAIL);
+    }
+
+    @Override
+    public void backfillCoverThumbnails(long fromId, long toId) {
+        imageThumbnailService.backfill(() -> {
+            long after = fromId - 1;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Object[]> rows = bookRepository.findCoversBetween(after, toId, PageRequest.of(0, THUMBNAIL_BACKFILL_BATCH));
+                if (rows.isEmpty()) break;
+                List<Long> changed = new ArrayList<>();
+                for (Object[] row : rows) {
+                    after = (Long) row[0];
+                    if (imageThumbnailService.generateMissing((String) row[1],
+                            ImageThumbnailService.Variant.CARD, ImageThumbnailService.Variant.DETAIL)) {
+                        changed.add(after);
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    bookRepository.touchAll(changed, LocalDateTime.now());
+                    catalogVersion.bump();
+                }
+            }
+        });
     }
 
     @Override
     @Transactional
     public void deleteBook(Long id) {
         bookRepository.deleteById(id);
+        TransactionHooks.afterCommit(() -> {
+            bookIndexRegistry.onDeleted(id);
+            catalogVersion.bump();
+        });
     }
 
     @Override
     public boolean existsByIsbn(String isbn) {
-        return bookRepository.existsByIsbn(isbn);
+        if (isbn == null || isbn.trim().isEmpty()) return false;
+        // 内存索引确定不存在时直接返回，只有可能重复时才按规范写法查询数据库
+        return bookIsbnIndex.mightContain(isbn) && bookRepository.existsByIsbn(canonicalOrRaw(isbn));
     }
 
     @Override
     public boolean existsByIsbnAndIdNot(String isbn, Long id) {
-        return bookRepository.existsByIsbnAndIdNot(isbn, id);
+        if (isbn == null || isbn.trim().isEmpty()) return false;
+        return bookIsbnIndex.mightContain(isbn, id) && bookRepository.existsByIsbnAndIdNot(canonicalOrRaw(isbn), id);
+    }
+
+    private static String canonicalOrRaw(String isbn) {
+        String canonical = Isbn.canonical(isbn);
+        return canonical != null ? canonical : isbn.trim();
     }
 
     @Override
     public List<Book> getBooksByCategory(Category category) {
-        return bookRepository.findByCategory(category);
+        if (category == null || category.getId() == null) {
+            return new ArrayList<>();
+        }
+        List<Book> books = bookRepository.findByCategoryId(category.getId());
+        books.forEach(this::attachCategory);
+        return books;
     }
 
     @Override
-    public Page<Book> getBooksByCategoryId(Long categoryId, Pageable pageable) {
+    public Page<BookCard> getBooksByCategoryId(Long categoryId, Pageable pageable) {
         // 添加对categoryId的检查
         if (categoryId == null || categoryId <= 0) {
             // 如果categoryId无效，返回空的结果集
             return Page.empty(pageable);
         }
-        return bookRepository.findByCategoryId(categoryId, pageable);
+        return toPage(bookRepository.findCardsByCategoryId(categoryId, pageable), categoryId,
+                () -> bookRepository.countByCategoryId(categoryId));
     }
     
     @Override
-    public Page<Book> findBooksByCategory(Long categoryId, Pageable pageable) {
+    public Page<BookCard> findBooksByCategory(Long categoryId, Pageable pageable) {
+        if (categoryId == null) {
+            return toPage(bookRepository.findCardsBy(pageable), null, bookRepository::count);
+        }
+        return toPage(bookRepository.findCardsByCategoryId(categoryId, pageable), categoryId,
+                () -> bookRepository.countByCategoryId(categoryId));
+    }
+
+    @Override
+    public Page<BookCard> getBooksByRating(Long categoryId, Pageable pageable) {
+        // 排序写在查询语句中，与评分索引的列顺序一致；与其它页码分页一样限制 OFFSET 深度
+        Pageable unsorted = PageRequest.of(Math.min(pageable.getPageNumber(), MAX_OFFSET_PAGES - 1), pageable.getPageSize());
         if (categoryId == null) {
-            return bookRepository.findAll(pageable);
+            return toPage(bookRepository.findCardsOrderByRating(unsorted), null, bookRepository::count);
         }
-        return bookRepository.findByCategoryId(categoryId, pageable);
+        return toPage(bookRepository.findCardsByCategoryIdOrderByRating(categoryId, unsorted), categoryId,
+                () -> bookRepository.countByCategoryId(categoryId));
+    }
+
+    /**
+     * 把不带总数的切片转换为分页结果：
+     * slice 模式下只保证“是否有下一页”正确；cached 模式下使用按目录版本缓存的总数
+     */
+    private Page<BookCard> toPage(Slice<BookCard> slice, Long categoryId, LongSupplier counter) {
+        Pageable pageable = slice.getPageable();
+        long total;
+        if ("slice".equalsIgnoreCase(countMode)) {
+            total = pageable.getOffset() + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0);
+        } else {
+            total = bookCountCache.get(categoryId, counter);
+        }
+        return new PageImpl<>(slice.getContent(), pageable, total);
     }
 
     @Override
-    public Page<Book> searchBooksByCategory(String keyword, Long categoryId, Pageable pageable) {
+    public Page<BookCard> searchBooksByCategory(String keyword, Long categoryId, Pageable pageable) {
         if (keyword == null || keyword.trim().isEmpty()) {
             return findBooksByCategory(categoryId, pageable);
         }
+        if (bookSearchIndex.isReady()) {
+            // 使用内存倒排索引检索并按相关度排序，再按ID批量加载当前页
+            BookSearchIndex.Hits hits = bookSearchIndex.search(keyword, categoryId, pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(findCardsByIdInOrder(hits.getIds()), pageable, hits.getTotal());
+        }
+        // 索引尚未预热完成时降级为数据库模糊查询
         if (categoryId == null) {
             return bookRepository.findByTitleContainingOrAuthorContaining(keyword, pageable);
         }
         return bookRepository.findByTitleContainingOrAuthorContainingAndCategoryId(keyword, categoryId, pageable);
     }
-}
\ No newline at end of file
+
+    @Override
+    public Page<BookCard> findBooksByFacets(BookFacetFilter filter, Pageable pageable) {
+        if (filter.isSingleCategoryOnly()) {
+            // 只按一个分类筛选时沿用原有的分类分页
+            return findBooksByCategory(filter.getSingleCategoryId(), pageable);
+        }
+        if (bookFacetIndex.isReady()) {
+            BookSearchIndex.Hits hits = bookFacetIndex.search(filter, pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(findCardsByIdInOrder(hits.getIds()), pageable, hits.getTotal());
+        }
+        // 索引尚未预热完成时降级为数据库查询
+        List<Integer> years = new ArrayList<>();
+        for (Integer decade : filter.getDecades()) {
+            for (int y = decade; y < decade + 10; y++) years.add(y);
+        }
+        return bookRepository.findCardsByFacets(
+                !filter.getCategoryIds().isEmpty(), orPlaceholder(filter.getCategoryIds(), -1L),
+                !years.isEmpty(), orPlaceholder(years, Integer.MIN_VALUE),
+                !filter.getPublishers().isEmpty(), orPlaceholder(filter.getPublishers(), ""),
+                pageable);
+    }
+
+    private static <T> Collection<T> orPlaceholder(Collection<T> values, T placeholder) {
+        return values.isEmpty() ? Collections.singletonList(placeholder) : values;
+    }
+
+    @Override
+    public FacetCounts getFacetCounts(BookFacetFilter filter) {
+        if (!bookFacetIndex.isReady()) return null;
+        BookFacetIndex.Counts counts = bookFacetIndex.count(filter);
+
+        List<FacetValue> categories = new ArrayList<>();
+        for (Category category : categoryDictionary.all()) {
+            int count = counts.getCategories().getOrDefault(category.getId(), 0);
+            boolean selected = filter.getCategoryIds().contains(category.getId());
+            if (count > 0 || selected) {
+                categories.add(new FacetValue(String.valueOf(category.getId()), category.getName(), count, selected));
+            }
+        }
+
+        List<Integer> decadeKeys = new ArrayList<>(counts.getDecades().keySet());
+        for (Integer selected : filter.getDecades()) {
+            if (!decadeKeys.contains(selected)) decadeKeys.add(selected);
+        }
+        decadeKeys.sort(Collections.reverseOrder());
+        List<FacetValue> decades = new ArrayList<>();
+        for (Integer decade : decadeKeys) {
+            int count = counts.getDecades().getOrDefault(decade, 0);
+            boolean selected = filter.getDecades().contains(decade);
+            if (count > 0 || selected) {
+                decades.add(new FacetValue(String.valueOf(decade), decade + "年代", count, selected));
+            }
+        }
+
+        List<FacetValue> publishers = new ArrayList<>();
+        for (Map.Entry<String, Integer> e : counts.getPublishers().entrySet()) {
+            publishers.add(new FacetValue(e.getKey(), e.getKey(), e.getValue(), filter.getPublishers().contains(e.getKey())));
+        }
+        return new FacetCounts(categories, decades, publishers);
+    }
+
+    /**
+     * 按给定ID顺序批量加载书籍卡片（忽略已不存在的ID）
+     */
+    private List<BookCard> findCardsByIdInOrder(List<Long> ids) {
+        if (ids.isEmpty()) return new ArrayList<>();
+        Map<Long, BookCard> byId = new HashMap<>();
+        for (BookCard card : bookRepository.findCardsByIdIn(ids)) {
+            byId.put(card.getId(), card);
+        }
+        List<BookCard> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            BookCard card = byId.get(id);
+            if (card != null) ordered.add(card);
+        }
+        return ordered;
+    }
+}
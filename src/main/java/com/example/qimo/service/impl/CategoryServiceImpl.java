@@ -1,24 +1,27 @@
 package com.example.qimo.service.impl;
 
+import com.example.qimo.cache.CategoryDictionary;
 import com.example.qimo.entity.Category;
 import com.example.qimo.repository.CategoryRepository;
 import com.example.qimo.service.CategoryService;
+import com.example.qimo.support.TransactionHooks;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
 import java.util.List;
-import java.util.Optional;
 
 @Service
 public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CategoryDictionary categoryDictionary;
 
     @Autowired
-    public CategoryServiceImpl(CategoryRepository categoryRepository) {
+    public CategoryServiceImpl(CategoryRepository categoryRepository, CategoryDictionary categoryDictionary) {
         this.categoryRepository = categoryRepository;
+        this.categoryDictionary = categoryDictionary;
     }
 
     // 初始化默认分类
@@ -45,7 +48,7 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Override
     public List<Category> getAllCategories() {
-        return categoryRepository.findAllByOrderByNameAsc();
+        return categoryDictionary.all();
     }
 
     @Override
@@ -63,7 +66,9 @@ public class CategoryServiceImpl implements CategoryService {
         
         Category category = new Category();
         category.setName(name.trim());
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        TransactionHooks.afterCommit(categoryDictionary::invalidate);
+        return saved;
     }
 
     @Override
@@ -74,7 +79,9 @@ public class CategoryServiceImpl implements CategoryService {
             throw new IllegalArgumentException("分类名称不能为空");
         }
         
-        Category category = findById(id);
+        // 从数据库加载，不修改分类字典中共享的对象
+        Category category = categoryRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("分类不存在"));
         
         // 校验唯一性（排除自身）
         if (!name.trim().equals(category.getName()) && categoryRepository.existsByName(name.trim())) {
@@ -83,12 +90,14 @@ public class CategoryServiceImpl implements CategoryService {
         
         category.setName(name.trim());
         categoryRepository.save(category);
+        TransactionHooks.afterCommit(categoryDictionary::invalidate);
     }
 
     @Override
     @Transactional
     public void deleteCategory(Long id) {
-        Category category = findById(id);
+        Category category = categoryRepository.findById(id)
+                .orElseThrow(() -> new IllegalStateException("分类不存在"));
         
         // 检查是否被书籍引用
         try {
@@ -100,32 +109,27 @@ public class CategoryServiceImpl implements CategoryService {
         }
         
         categoryRepository.delete(category);
+        TransactionHooks.afterCommit(categoryDictionary::invalidate);
     }
 
     @Override
     public Category findById(Long id) {
-        // 尝试从数据库查找分类
-        Optional<Category> optionalCategory = categoryRepository.findById(id);
-        if (optionalCategory.isPresent()) {
-            return optionalCategory.get();
+        // 从分类字典查找分类
+        Category category = categoryDictionary.get(id);
+        if (category != null) {
+            return category;
         }
         
-        // 如果找不到，尝试查找"其他"分类
-        try {
-            List<Category> categories = categoryRepository.findAll();
-            for (Category category : categories) {
-                if ("其他".equals(category.getName())) {
-                    return category;
-                }
-            }
-        } catch (Exception e) {
-            // 如果查询出错，忽略
+        // 如果找不到，使用"其他"分类
+        Category fallback = categoryDictionary.fallback();
+        if (fallback != null) {
+            return fallback;
         }
         
         // 如果"其他"分类也不存在，创建一个内存中的默认分类
         Category defaultCategory = new Category();
         defaultCategory.setId(1L); // 设置一个默认ID
-        defaultCategory.setName("其他");
+        defaultCategory.setName(CategoryDictionary.FALLBACK_NAME);
         return defaultCategory;
     }
 }
\ No newline at end of file
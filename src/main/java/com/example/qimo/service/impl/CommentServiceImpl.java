@@ -1,21 +1,41 @@
 package com.example.qimo.service.impl;
 
+import com.example.qimo.cache.CommentSectionCache;
+import com.example.qimo.dto.CommentNode;
+import com.example.qimo.dto.CommentRef;
+import com.example.qimo.dto.LikeState;
 import com.example.qimo.entity.Comment;
 import com.example.qimo.entity.Book;
 import com.example.qimo.entity.User;
 import com.example.qimo.repository.CommentRepository;
 import com.example.qimo.repository.UserRepository;
 import com.example.qimo.repository.BookRepository;
+import com.example.qimo.service.CommentEventHub;
+import com.example.qimo.service.CommentIngestionPipeline;
+import com.example.qimo.service.CommentLikeBuffer;
 import com.example.qimo.service.CommentService;
+import com.example.qimo.service.TrendingService;
+import com.example.qimo.support.TransactionHooks;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -27,129 +47,217 @@ public class CommentServiceImpl implements CommentService {
     private final CommentRepository commentRepository;
     private final UserRepository userRepository;
     private final BookRepository bookRepository;
+    private final CommentSectionCache commentSectionCache;
+    private final CommentLikeBuffer commentLikeBuffer;
+    private final CommentIngestionPipeline commentIngestionPipeline;
+    private final CommentEventHub commentEventHub;
+    private final TrendingService trendingService;
+    private final TransactionTemplate writeTransaction;
     
     @Autowired
-    public CommentServiceImpl(CommentRepository commentRepository, UserRepository userRepository, BookRepository bookRepository) {
+    public CommentServiceImpl(CommentRepository commentRepository, UserRepository userRepository, BookRepository bookRepository,
+                              CommentSectionCache commentSectionCache, CommentLikeBuffer commentLikeBuffer,
+                              CommentIngestionPipeline commentIngestionPipeline, CommentEventHub commentEventHub,
+                              TrendingService trendingService, PlatformTransactionManager transactionManager) {
         this.commentRepository = commentRepository;
         this.userRepository = userRepository;
         this.bookRepository = bookRepository;
+        this.commentSectionCache = commentSectionCache;
+        this.commentLikeBuffer = commentLikeBuffer;
+        this.commentIngestionPipeline = commentIngestionPipeline;
+        this.commentEventHub = commentEventHub;
+        this.trendingService = trendingService;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
     }
     
     @Override
-    @Transactional // 确保方法在事务内执行
+    @Transactional
     public void toggleLike(Long commentId, String currentUsername) {
-        // 1. 先查询用户，避免后续操作中再次查询
-        User user = userRepository.findByUsername(currentUsername)
-            .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + currentUsername));
-        
-        // 2. 使用findById方法（已添加@EntityGraph）查询评论，确保likedBy集合被正确加载
-        Comment comment = commentRepository.findById(commentId)
+        applyLike(commentId, currentUsername, null);
+    }
+
+    @Override
+    @Transactional
+    public LikeState like(Long commentId, String currentUsername) {
+        return applyLike(commentId, currentUsername, true);
+    }
+
+    @Override
+    @Transactional
+    public LikeState unlike(Long commentId, String currentUsername) {
+        return applyLike(commentId, currentUsername, false);
+    }
+
+    /**
+     * 点赞写入：只按 (comment_id, user_id) 主键执行一条 INSERT IGNORE 或 DELETE，不装载评论的点赞用户集合，
+     * 耗时与评论已有的点赞数无关。
+     * 先更新点赞计数以取得评论行的写锁，同一评论上的并发点赞因此按顺序执行，不会丢失更新或互相死锁；
+     * 点赞记录实际没有变化时再把计数改回。
+     * @param target 目标状态，为null时切换
+     */
+    private LikeState applyLike(Long commentId, String username, Boolean target) {
+        Long userId = userRepository.findIdByUsername(username)
+            .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + username));
+        Long bookId = commentRepository.findBookIdById(commentId)
             .orElseThrow(() -> new EntityNotFoundException("评论不存在: " + commentId));
-        
-        // 3. 操作点赞状态 - 先检查是否已经在集合中
-        Set<User> likedUsers = comment.getLikedBy();
-        if (likedUsers != null) {
-            boolean isLiked = false;
-            // 手动检查用户是否已点赞，避免懒加载问题
-            for (User likedUser : likedUsers) {
-                if (likedUser.getId().equals(user.getId())) {
-                    isLiked = true;
-                    break;
-                }
-            }
-            
-            if (isLiked) {
-                // 已点赞，取消点赞
-                likedUsers.remove(user);
+
+        // 写回模式：只记录到内存缓冲，由缓冲定期批量写入数据库
+        if (commentLikeBuffer.isEnabled()) {
+            boolean liked = target == null
+                ? commentLikeBuffer.toggle(commentId, bookId, userId, username)
+                : commentLikeBuffer.set(commentId, bookId, userId, username, target);
+            // 点赞数加上缓冲中尚未写入的增量，响应立即反映本次操作
+            int likeCount = commentRepository.findLikeCount(commentId).orElse(0) + commentLikeBuffer.pendingDelta(commentId);
+            return new LikeState(commentId, liked, Math.max(likeCount, 0));
+        }
+
+        boolean liked;
+        int delta;
+        if (commentRepository.adjustLikeCount(commentId, Boolean.FALSE.equals(target) ? -1 : 1) == 0) {
+            throw new EntityNotFoundException("评论不存在: " + commentId);
+        }
+        if (Boolean.FALSE.equals(target)) {
+            liked = false;
+            delta = commentRepository.deleteLike(commentId, userId) > 0 ? -1 : 0;
+            if (delta == 0) commentRepository.adjustLikeCount(commentId, 1);
+        } else {
+            if (target == null && commentRepository.deleteLike(commentId, userId) > 0) {
+                // 切换：原本已点赞，改为取消
+                liked = false;
+                delta = -1;
+                commentRepository.adjustLikeCount(commentId, -2);
             } else {
-                // 未点赞，添加点赞
-                likedUsers.add(user);
+                liked = true;
+                delta = commentRepository.insertLike(commentId, userId) > 0 ? 1 : 0;
+                if (delta == 0) commentRepository.adjustLikeCount(commentId, -1);
             }
         }
-        
-        // 4. 显式保存评论（确保更新被写入数据库）
-        commentRepository.saveAndFlush(comment);
+
+        // 事务提交后使该书评论区的缓存失效，并推送点赞数变化
+        long likeCount = commentRepository.findLikeCount(commentId).orElse(0);
+        if (delta != 0) {
+            int change = delta;
+            TransactionHooks.afterCommit(() -> {
+                commentSectionCache.bump(bookId);
+                commentEventHub.publishLike(bookId, commentId, change, likeCount);
+                if (change > 0) trendingService.record(bookId, TrendingService.Signal.LIKE);
+            });
+        }
+        return new LikeState(commentId, liked, likeCount);
     }
     
     @Override
     public Comment findById(Long id) {
         return commentRepository.findById(id)
+            .filter(c -> !c.isDeleted())
             .orElseThrow(() -> new EntityNotFoundException("评论不存在: " + id));
     }
     
     @Override
     public List<Comment> getCommentsByBookId(Long bookId) {
-        return commentRepository.findByBookIdOrderByCreatedAtDesc(bookId);
+        return commentRepository.findByBookIdAndDeletedFalseOrderByCreatedAtDesc(bookId);
     }
     
     @Override
-    public List<Comment> getCommentsWithRepliesByBookId(Long bookId) {
-        // 先一次性加载该书的所有评论（包含主评论和回复），用于构建 parentId -> children 映射
-        List<Comment> allComments = commentRepository.findByBookIdOrderByCreatedAtDesc(bookId);
-        logger.debug("Loaded {} comments for book {} (allComments)", allComments.size(), bookId);
-
-        // 构建 parentId -> List<comment> 映射
-        java.util.Map<Long, java.util.List<Comment>> childrenMap = new java.util.HashMap<>();
-        for (Comment c : allComments) {
-            if (c.getParent() != null && c.getParent().getId() != null) {
-                childrenMap.computeIfAbsent(c.getParent().getId(), k -> new java.util.ArrayList<>()).add(c);
+    @Transactional(readOnly = true)
+    public Page<CommentNode> getCommentThreads(Long bookId, ThreadSort sort, int page, int size, int inlineReplies) {
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(size, 1));
+        Page<CommentNode> threads;
+        switch (sort != null ? sort : ThreadSort.NEWEST) {
+            case OLDEST:
+                threads = commentRepository.findRootsOldest(bookId, pageable);
+                break;
+            case TOP:
+                threads = commentRepository.findRootsTop(bookId, pageable);
+                break;
+            default:
+                threads = commentRepository.findRootsNewest(bookId, pageable);
+        }
+        // 每个评论串只取前 inlineReplies 条回复（多取一条用于判断是否还有更多），查询次数与页大小成正比，与评论总数无关
+        if (inlineReplies > 0) {
+            for (CommentNode thread : threads.getContent()) {
+                if (thread.getPath() == null) continue;
+                Slice<CommentNode> replies = loadReplies(bookId, thread.getPath(), thread.getPath(), inlineReplies);
+                thread.getReplies().addAll(replies.getContent());
+                thread.setMoreReplies(replies.hasNext());
             }
         }
+        return threads;
+    }
 
-        // 使用专门的查询获取数据库中实际的根评论（parent == null），避免因为内存中对象状态不一致而误判
-        java.util.List<Comment> roots = commentRepository.findByBookIdAndParentIsNullOrderByCreatedAtDesc(bookId);
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<CommentNode> getReplies(Long bookId, Long threadId, String after, int limit) {
+        String threadPath = commentRepository.findPath(bookId, threadId)
+            .orElseThrow(() -> new EntityNotFoundException("评论不存在: " + threadId));
+        // 游标必须位于该评论串内，否则从头加载
+        String cursor = after != null && after.startsWith(threadPath) ? after : threadPath;
+        return loadReplies(bookId, threadPath, cursor, limit);
+    }
 
-        // 去重根评论（有时由于左连接或查询原因数据库返回的列表可能包含重复的实体）
-        java.util.Map<Long, Comment> uniqueRoots = new java.util.LinkedHashMap<>();
-        for (Comment root : roots) {
-            if (root != null && root.getId() != null) {
-                uniqueRoots.putIfAbsent(root.getId(), root);
+    private Slice<CommentNode> loadReplies(Long bookId, String threadPath, String after, int limit) {
+        Set<String> deleted = new HashSet<>(commentRepository.findDeletedPaths(bookId, threadPath + "%"));
+        List<CommentNode> content = new ArrayList<>(limit + 1);
+        String cursor = after;
+        // 已删除子树中的回复被过滤后不足一页时，从最后读到的位置继续读取
+        while (content.size() <= limit) {
+            List<CommentNode> rows = commentRepository.findRepliesAfter(bookId, threadPath + "%", cursor, PageRequest.of(0, limit + 1));
+            for (CommentNode row : rows) {
+                if (!Comment.hasAncestorIn(row.getPath(), deleted)) content.add(row);
             }
+            if (rows.size() <= limit) break;
+            cursor = rows.get(rows.size() - 1).getPath();
         }
+        boolean hasNext = content.size() > limit;
+        return new SliceImpl<>(hasNext ? content.subList(0, limit) : content, PageRequest.of(0, limit), hasNext);
+    }
 
-        java.util.List<Comment> dedupedRoots = new java.util.ArrayList<>(uniqueRoots.values());
-        // 如果有 orphan replies（子评论没有可追溯到的根），将其提升为根评论以避免在页面隐藏
-        java.util.Map<Long, Comment> allById = new java.util.HashMap<>();
-        for (Comment c : allComments) {
-            if (c != null && c.getId() != null) allById.put(c.getId(), c);
+    /**
+     * 回复目标的祖先已被删除时，整个子树在清理前已不可见，不再接受回复
+     */
+    private void requireVisibleParent(Long bookId, Long parentId, String parentPath) {
+        if (parentPath == null) return;
+        List<String> ancestors = Comment.ancestorPaths(parentPath);
+        if (!ancestors.isEmpty() && commentRepository.existsDeletedByPathIn(bookId, ancestors)) {
+            throw new EntityNotFoundException("父评论不存在: " + parentId);
         }
+    }
 
-        int promoted = 0;
-        for (Comment c : allComments) {
-            if (c == null) continue;
-            if (c.getParent() == null || c.getParent().getId() == null) continue;
-
-            Long ancestorId = c.getParent().getId();
-            java.util.Set<Long> visited = new java.util.HashSet<>();
-            boolean foundRoot = false;
-            while (ancestorId != null && !visited.contains(ancestorId)) {
-                visited.add(ancestorId);
-                if (uniqueRoots.containsKey(ancestorId)) { foundRoot = true; break; }
-                Comment parent = allById.get(ancestorId);
-                if (parent == null) break;
-                ancestorId = (parent.getParent() == null) ? null : parent.getParent().getId();
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public AddResult addComment(Long bookId, String content, String username, Long parentId) {
+        // 写入管道启用时，请求线程只做轻量校验（不持有事务和连接），由写入线程组提交
+        if (commentIngestionPipeline.isEnabled()) {
+            Long userId = userRepository.findIdByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + username));
+            if (parentId == null) {
+                if (!bookRepository.existsById(bookId)) {
+                    throw new EntityNotFoundException("书籍不存在: " + bookId);
+                }
+                return commentIngestionPipeline.submit(bookId, userId, content, null, "", 0)
+                        ? AddResult.ADDED : AddResult.PENDING;
             }
-
-            if (!foundRoot) {
-                // 没有找到根：将当前评论提升为根，以便显示为独立的主评论
-                uniqueRoots.putIfAbsent(c.getId(), c);
-                promoted++;
+            CommentRef parent = commentRepository.findRef(parentId)
+                .orElseThrow(() -> new EntityNotFoundException("父评论不存在: " + parentId));
+            if (!parent.getBookId().equals(bookId)) {
+                throw new IllegalArgumentException("不能回复其他书籍的评论");
+            }
+            requireVisibleParent(bookId, parentId, parent.getPath());
+            // 父评论路径尚未补齐的旧数据走同步写入，由 assignPath 一并补齐
+            if (parent.getPath() != null && parent.getDepth() != null) {
+                int depth = parent.getDepth() + 1;
+                if (depth > Comment.MAX_DEPTH) {
+                    throw new IllegalArgumentException("回复层级过深");
+                }
+                return commentIngestionPipeline.submit(bookId, userId, content, parentId, parent.getPath(), depth)
+                        ? AddResult.ADDED : AddResult.PENDING;
             }
         }
-        if (promoted > 0) logger.info("Promoted {} orphan comments to roots for book {}", promoted, bookId);
-        logger.debug("Root comments (deduped) loaded: {} for book {}", dedupedRoots.size(), bookId);
-
-        // 在内存中递归填充 replies 列表（不替换集合实例）
-        for (Comment root : dedupedRoots) {
-            populateRepliesFromMap(root, childrenMap);
-        }
-
-        return dedupedRoots;
+        writeTransaction.executeWithoutResult(status -> addCommentDirectly(bookId, content, username, parentId));
+        return AddResult.ADDED;
     }
-    
-    @Override
-    @Transactional
-    public void addComment(Long bookId, String content, String username, Long parentId) {
+
+    private void addCommentDirectly(Long bookId, String content, String username, Long parentId) {
         // 验证用户是否存在
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + username));
@@ -161,12 +269,14 @@ public class CommentServiceImpl implements CommentService {
         if (parentId != null) {
             // 处理回复评论的情况
             Comment parentComment = commentRepository.findById(parentId)
+                .filter(c -> !c.isDeleted())
                 .orElseThrow(() -> new EntityNotFoundException("父评论不存在: " + parentId));
             
             // 验证父评论所属书籍是否与当前书籍一致
             if (!parentComment.getBook().getId().equals(bookId)) {
                 throw new IllegalArgumentException("不能回复其他书籍的评论");
             }
+            requireVisibleParent(bookId, parentId, parentComment.getPath());
             
             // 设置父评论关系
             comment.setParent(parentComment);
@@ -183,21 +293,37 @@ public class CommentServiceImpl implements CommentService {
         
         // 先保存评论，确保ID生成并持久化
         Comment saved = commentRepository.saveAndFlush(comment);
-        logger.info("Saved new comment id={} for bookId={}, parentId={}, user={}", saved.getId(), bookId, parentId, username);
+
+        // 生成物化路径（依赖自增ID，只能在插入后设置，由事务提交时的脏检查写回）
+        assignPath(saved);
+        if (saved.getDepth() > Comment.MAX_DEPTH) {
+            throw new IllegalArgumentException("回复层级过深");
+        }
 
         // 如果有父评论，确保父对象的replies集合包含该子评论并刷新（有助于事务内一致性）
         if (parentId != null) {
             // parentComment 已在方法中加载并为持久化实体
             // 显式刷新父对象到数据库，以便在随后读取时能看到最新的子集合
             commentRepository.flush();
+            commentRepository.adjustReplyCount(parentId, 1);
         }
+        bookRepository.adjustCommentCount(bookId, 1);
+        
+        // 事务提交后使该书评论区的缓存失效，并推送新评论
+        Long commentId = saved.getId();
+        TransactionHooks.afterCommit(() -> {
+            commentSectionCache.bump(bookId);
+            commentEventHub.publishComment(bookId, commentId, parentId);
+            trendingService.record(bookId, TrendingService.Signal.COMMENT);
+        });
     }
 
     @Override
     @Transactional
     public void deleteCommentById(Long commentId, String currentUsername, boolean isAdmin) {
-        // 查询评论是否存在
+        // 查询评论是否存在（已删除的视为不存在）
         Comment comment = commentRepository.findById(commentId)
+            .filter(c -> !c.isDeleted())
             .orElseThrow(() -> new EntityNotFoundException("评论不存在"));
         
         // 权限校验：本人 or 管理员
@@ -205,25 +331,49 @@ public class CommentServiceImpl implements CommentService {
             throw new AccessDeniedException("无权删除他人评论");
         }
         
-        // 执行删除（级联删除子回复）
-        // Comment实体中已配置了orphanRemoval = true和cascade = CascadeType.REMOVE
-        commentRepository.deleteById(commentId);
+        // 只写入墓碑标记（单行更新），读者立即看不到该评论及其回复；
+        // 子树和点赞记录由 CommentPurgeService 在后台分批删除，后代评论的计数在清理时扣减
+        Long bookId = comment.getBook().getId();
+        if (commentRepository.markDeleted(commentId) == 0) {
+            throw new EntityNotFoundException("评论不存在");
+        }
+        if (comment.getParent() != null) {
+            commentRepository.adjustReplyCount(comment.getParent().getId(), -1);
+        }
+        bookRepository.adjustCommentCount(bookId, -1);
+        TransactionHooks.afterCommit(() -> {
+            commentSectionCache.bump(bookId);
+            commentEventHub.publishDelete(bookId, commentId);
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<Long> getLikedCommentIds(Long bookId, String username) {
+        if (bookId == null || username == null) return Collections.emptySet();
+        List<Number> rows = commentRepository.findLikedCommentIds(bookId, username);
+        Set<Long> likedIds = new HashSet<>(rows.size() * 2);
+        for (Number id : rows) {
+            likedIds.add(id.longValue());
+        }
+        // 合并写回缓冲中尚未写入数据库的点赞操作
+        return commentLikeBuffer.overlay(bookId, username, likedIds);
     }
 
     /**
-     * 递归加载指定评论的子回复并为每个子回复继续加载其子回复
+     * 设置评论的物化路径和深度；父评论的路径缺失时（尚未补齐的旧数据）沿祖先链一并补齐
      */
-    private void populateRepliesFromMap(Comment parent, java.util.Map<Long, java.util.List<Comment>> childrenMap) {
-        if (parent == null) return;
-
-        java.util.List<Comment> children = childrenMap.get(parent.getId());
-        java.util.List<Comment> existing = parent.getReplies();
-        existing.clear();
-        if (children != null && !children.isEmpty()) {
-            existing.addAll(children);
-            for (Comment child : children) {
-                populateRepliesFromMap(child, childrenMap);
-            }
+    private void assignPath(Comment comment) {
+        Comment parent = comment.getParent();
+        if (parent == null) {
+            comment.setPath(Comment.pathSegment(comment.getId()));
+            comment.setDepth(0);
+            return;
+        }
+        if (parent.getPath() == null || parent.getDepth() == null) {
+            assignPath(parent);
         }
+        comment.setPath(parent.getPath() + Comment.pathSegment(comment.getId()));
+        comment.setDepth(parent.getDepth() + 1);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package com.example.qimo.support;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * 页面级条件 GET（ETag / Last-Modified）工具。
+ * 控制器在加载数据、渲染模板之前计算校验值，命中时直接返回 304。
+ */
+public final class ConditionalGet {
+
+    // 进程启动标识：内存中的版本号重启后从0开始，加入启动时间避免与重启前的 ETag 冲突
+    private static final long BOOT_NONCE = System.currentTimeMillis();
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * 由若干组成部分计算弱 ETag
+     */
+    public static String etag(Object... parts) {
+        StringBuilder raw = new StringBuilder().append(BOOT_NONCE);
+        for (Object part : parts) {
+            raw.append('|').append(part);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(raw.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder("W/\"");
+            for (int i = 0; i < 12; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 页面中与访问者相关的部分（导航栏的用户名/角色、表单中的 CSRF 令牌）
+     */
+    public static String viewerKey(HttpServletRequest request, Authentication authentication) {
+        StringBuilder key = new StringBuilder();
+        if (authentication != null && authentication.isAuthenticated()) {
+            key.append(authentication.getName());
+            for (GrantedAuthority authority : authentication.getAuthorities()) {
+                key.append(',').append(authority.getAuthority());
+            }
+        }
+        Object csrf = request.getAttribute(CsrfToken.class.getName());
+        if (csrf instanceof CsrfToken) {
+            key.append('#').append(((CsrfToken) csrf).getToken());
+        }
+        return key.toString();
+    }
+
+    /**
+     * 检查请求是否命中缓存：命中时已写入 304 响应，调用方应直接返回null。
+     * 带有闪存消息（重定向后的提示）的请求不参与条件判断，以保证提示能显示出来。
+     * @param request 当前请求
+     * @param etag ETag
+     * @param lastModified 最后修改时间（毫秒），小于0时不使用
+     * @return 是否未修改
+     */
+    public static boolean checkNotModified(ServletWebRequest request, String etag, long lastModified) {
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            // 允许浏览器保存页面但每次都需验证；页面含用户信息，不允许共享缓存保存
+            response.setHeader("Cache-Control", "private, no-cache");
+        }
+        Map<String, ?> flash = RequestContextUtils.getInputFlashMap(request.getRequest());
+        if (flash != null && !flash.isEmpty()) {
+            return false;
+        }
+        return request.checkNotModified(etag, lastModified);
+    }
+}
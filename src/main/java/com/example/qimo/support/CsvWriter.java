@@ -0,0 +1,59 @@
+package com.example.qimo.support;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 流式 CSV 写入器（RFC 4180）：含逗号、引号或换行的字段用双引号包裹，引号转义为 ""。
+ */
+public class CsvWriter {
+
+    private final Writer writer;
+    private boolean firstField = true;
+
+    /**
+     * @param writer 输出目标，调用方应传入带缓冲的 Writer
+     */
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * 写入一个字段，null 写为空字段
+     */
+    public CsvWriter field(Object value) throws IOException {
+        if (!firstField) writer.write(',');
+        firstField = false;
+        if (value == null) return this;
+        String s = value.toString();
+        if (needsQuoting(s)) {
+            writer.write('"');
+            writer.write(s.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(s);
+        }
+        return this;
+    }
+
+    /**
+     * 结束当前记录
+     */
+    public void endRecord() throws IOException {
+        writer.write("\r\n");
+        firstField = true;
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private static boolean needsQuoting(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        // 首尾空白在部分软件中会被截掉
+        return !s.isEmpty() && (Character.isWhitespace(s.charAt(0)) || Character.isWhitespace(s.charAt(s.length() - 1)));
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.qimo.support;
+
+/**
+ * ISBN 归一化工具：把 ISBN-10 / ISBN-13（可含连字符和空格）统一转换为 13 位数字对应的 long 键。
+ * 两种写法都先验证校验位；ISBN-10 按规则加 978 前缀并重算校验位，因此同一本书的两种写法得到相同的键。
+ */
+public final class Isbn {
+
+    /**
+     * 无法解析时返回的键
+     */
+    public static final long INVALID = -1L;
+
+    private Isbn() {
+    }
+
+    /**
+     * 规范写法：13 位数字，不含连字符和空格。数据库中保存和查询 ISBN 都使用规范写法
+     * @param isbn 原始 ISBN，可为null
+     * @return 规范写法；为空或格式错误时返回null
+     */
+    public static String canonical(String isbn) {
+        long key = toKey(isbn);
+        return key == INVALID ? null : String.format("%013d", key);
+    }
+
+    /**
+     * 计算 ISBN 的规范键
+     * @param isbn 原始 ISBN，可为null
+     * @return 13 位 ISBN 对应的数值；为空、格式错误或校验位不符时返回 {@link #INVALID}
+     */
+    public static long toKey(String isbn) {
+        if (isbn == null) return INVALID;
+        char[] digits = new char[13];
+        int n = 0;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') continue;
+            if (n >= 13) return INVALID;
+            if (c >= '0' && c <= '9') {
+                digits[n++] = c;
+            } else if ((c == 'X' || c == 'x') && n == 9) {
+                // 只有 ISBN-10 的校验位可以是 X
+                digits[n++] = 'X';
+            } else {
+                return INVALID;
+            }
+        }
+        if (n == 13) {
+            if (digits[9] == 'X') return INVALID;
+            // 校验：各位依次乘以 1、3 交替的权重，总和为 10 的倍数
+            long key = 0;
+            int check = 0;
+            for (int i = 0; i < 13; i++) {
+                int d = digits[i] - '0';
+                key = key * 10 + d;
+                check += (i % 2 == 0) ? d : d * 3;
+            }
+            return check % 10 == 0 ? key : INVALID;
+        }
+        if (n == 10) {
+            // 校验：各位依次乘以 10 到 1 的权重（X 表示 10），总和为 11 的倍数
+            int check = 0;
+            for (int i = 0; i < 10; i++) {
+                check += (digits[i] == 'X' ? 10 : digits[i] - '0') * (10 - i);
+            }
+            if (check % 11 != 0) return INVALID;
+            // 978 + 前 9 位，再按 ISBN-13 规则计算校验位
+            long key = 978;
+            int sum = 9 + 7 * 3 + 8;
+            for (int i = 0; i < 9; i++) {
+                if (digits[i] == 'X') return INVALID;
+                int d = digits[i] - '0';
+                key = key * 10 + d;
+                sum += (i % 2 == 0) ? d * 3 : d;
+            }
+            return key * 10 + (10 - sum % 10) % 10;
+        }
+        return INVALID;
+    }
+}
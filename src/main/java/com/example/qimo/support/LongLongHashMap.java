@@ -0,0 +1,170 @@
+package com.example.qimo.support;
+
+import java.util.Arrays;
+
+/**
+ * long -> long 的开放寻址哈希表（线性探测），键值都以原始类型存放在数组中，
+ * 没有装箱和 Entry 对象，适合几十万到上百万条的内存索引。非线程安全。
+ */
+public class LongLongHashMap {
+
+    // 空槽标记；调用方不能使用该值作为键
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int threshold;
+
+    public LongLongHashMap() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize 预计元素个数
+     */
+    public LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(long key) {
+        return keys[indexOf(key)] != EMPTY;
+    }
+
+    /**
+     * @return 键对应的值，不存在时返回 defaultValue
+     */
+    public long get(long key, long defaultValue) {
+        int i = indexOf(key);
+        return keys[i] != EMPTY ? values[i] : defaultValue;
+    }
+
+    /**
+     * 写入键值
+     * @return 原来的值，不存在时返回 defaultValue
+     */
+    public long put(long key, long value, long defaultValue) {
+        checkKey(key);
+        int i = indexOf(key);
+        if (keys[i] != EMPTY) {
+            long old = values[i];
+            values[i] = value;
+            return old;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold) resize(keys.length << 1);
+        return defaultValue;
+    }
+
+    /**
+     * 把键对应的值加上 delta（不存在时视为0），结果为0时删除该键
+     * @return 新值
+     */
+    public long addTo(long key, long delta) {
+        checkKey(key);
+        int i = indexOf(key);
+        if (keys[i] == EMPTY) {
+            if (delta == 0) return 0;
+            keys[i] = key;
+            values[i] = delta;
+            if (++size > threshold) resize(keys.length << 1);
+            return delta;
+        }
+        long value = values[i] + delta;
+        if (value == 0) {
+            removeAt(i);
+        } else {
+            values[i] = value;
+        }
+        return value;
+    }
+
+    /**
+     * 删除键
+     * @return 原来的值，不存在时返回 defaultValue
+     */
+    public long remove(long key, long defaultValue) {
+        int i = indexOf(key);
+        if (keys[i] == EMPTY) return defaultValue;
+        long old = values[i];
+        removeAt(i);
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * 返回键所在的槽位，不存在时返回应插入的空槽位
+     */
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * 删除槽位后把后续同一探测链上的元素前移（无需墓碑标记）
+     */
+    private void removeAt(int slot) {
+        int mask = keys.length - 1;
+        int gap = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            long k = keys[i];
+            if (k == EMPTY) break;
+            int home = mix(k) & mask;
+            // home 不在 (gap, i] 区间内时，该元素可以移动到空位
+            boolean movable = gap <= i ? (home <= gap || home > i) : (home <= gap && home > i);
+            if (movable) {
+                keys[gap] = k;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = EMPTY;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = indexOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) throw new IllegalArgumentException("Long.MIN_VALUE 不能作为键");
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
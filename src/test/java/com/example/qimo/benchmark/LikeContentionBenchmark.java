@@ -0,0 +1,218 @@
+package com.example.qimo.benchmark;
+
+import com.example.qimo.entity.Comment;
+import com.example.qimo.repository.CommentRepository;
+import com.example.qimo.service.CommentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 评论点赞的并发压测（qimo.benchmark.likes.enabled=true 时在启动后执行一次）。
+ * 创建临时书籍、评论和一批禁用状态的测试用户，把评论的点赞数依次预填到各个规模，
+ * 每个规模下多个线程同时对同一条评论执行点赞/取消点赞，输出单次操作的耗时分布；
+ * 同时记录旧实现中装载整个点赞用户集合的耗时作为对照。结束后删除全部临时数据。
+ * 不要在生产库上开启。
+ * 放在测试源码中，不会打包进应用；需要时用测试类路径启动：
+ * {@code mvn test-compile spring-boot:run -Dspring-boot.run.useTestClasspath=true
+ * -Dspring-boot.run.arguments=--qimo.benchmark.likes.enabled=true}
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(name = "qimo.benchmark.likes.enabled", havingValue = "true")
+public class LikeContentionBenchmark implements CommandLineRunner {
+    private static final Logger logger = LoggerFactory.getLogger(LikeContentionBenchmark.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 依次预填的点赞数
+    @Value("${qimo.benchmark.likes.stages:0,1000,10000,50000}")
+    private int[] stages;
+
+    @Value("${qimo.benchmark.likes.threads:8}")
+    private int threads;
+
+    // 每个线程在每个规模下执行的点赞+取消点赞轮数
+    @Value("${qimo.benchmark.likes.rounds:100}")
+    private int rounds;
+
+    @Override
+    public void run(String... args) throws Exception {
+        int maxLikes = Arrays.stream(stages).max().orElse(0);
+        String prefix = "likebench_" + Long.toString(System.currentTimeMillis(), 36) + "_";
+        Long bookId = null;
+        try {
+            // 前 maxLikes 个用户用于预填点赞，其余每个线程一个，用于并发点赞
+            List<Long> userIds = createUsers(prefix, maxLikes + threads);
+            bookId = insert("INSERT INTO books (title, created_at, updated_at) VALUES (?, ?, ?)",
+                    prefix + "book", now(), now());
+            long commentId = insert("INSERT INTO comments (content, created_at, book_id, user_id) VALUES (?, ?, ?, ?)",
+                    "like benchmark", now(), bookId, userIds.get(0));
+            jdbcTemplate.update("UPDATE comments SET path = ?, depth = 0 WHERE id = ?", Comment.pathSegment(commentId), commentId);
+
+            logger.info("点赞压测开始：threads={}, rounds={}, stages={}", threads, rounds, Arrays.toString(stages));
+            int filled = 0;
+            for (int stage : stages) {
+                filled = prefill(commentId, userIds, filled, stage);
+                long[] latencies = contend(commentId, prefix, maxLikes);
+                long legacy = legacyLoad(commentId);
+                Arrays.sort(latencies);
+                logger.info("likes={} ops={} p50={}us p99={}us max={}us | 旧实现装载点赞用户集合={}us",
+                        stage, latencies.length, micros(percentile(latencies, 0.50)), micros(percentile(latencies, 0.99)),
+                        micros(latencies[latencies.length - 1]), micros(legacy));
+            }
+        } finally {
+            cleanup(prefix, bookId);
+        }
+    }
+
+    private List<Long> createUsers(String prefix, int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // 禁用状态且密码不是合法的 BCrypt 值，测试用户无法登录
+            rows.add(new Object[]{prefix + i, "!", prefix + i + "@benchmark.invalid", now()});
+        }
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate("INSERT INTO users (username, password, email, role, enabled, created_at) VALUES (?, ?, ?, 'USER', false, ?)",
+                    rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+        return jdbcTemplate.queryForList("SELECT id FROM users WHERE username LIKE ? ORDER BY id", Long.class, prefix + "%");
+    }
+
+    private int prefill(long commentId, List<Long> userIds, int filled, int target) {
+        for (int from = filled; from < target; from += BATCH_SIZE) {
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = from; i < Math.min(from + BATCH_SIZE, target); i++) {
+                rows.add(new Object[]{commentId, userIds.get(i)});
+            }
+            jdbcTemplate.batchUpdate("INSERT IGNORE INTO comment_likes (comment_id, user_id) VALUES (?, ?)", rows);
+        }
+        jdbcTemplate.update("UPDATE comments SET like_count = (SELECT COUNT(*) FROM comment_likes WHERE comment_id = ?) WHERE id = ?",
+                commentId, commentId);
+        return Math.max(filled, target);
+    }
+
+    private long[] contend(long commentId, String prefix, int firstProbeUser) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String username = prefix + (firstProbeUser + t);
+                futures.add(pool.submit(() -> {
+                    long[] samples = new long[rounds * 2];
+                    start.await();
+                    for (int r = 0; r < rounds; r++) {
+                        long t0 = System.nanoTime();
+                        commentService.like(commentId, username);
+                        long t1 = System.nanoTime();
+                        commentService.unlike(commentId, username);
+                        samples[r * 2] = t1 - t0;
+                        samples[r * 2 + 1] = System.nanoTime() - t1;
+                    }
+                    return samples;
+                }));
+            }
+            start.countDown();
+            long[] all = new long[threads * rounds * 2];
+            int offset = 0;
+            for (Future<long[]> f : futures) {
+                long[] samples = f.get();
+                System.arraycopy(samples, 0, all, offset, samples.length);
+                offset += samples.length;
+            }
+            return all;
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 旧实现的主要开销：装载评论的整个点赞用户集合
+     */
+    private long legacyLoad(long commentId) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return tx.execute(status -> {
+            long t0 = System.nanoTime();
+            commentRepository.findById(commentId).ifPresent(c -> c.getLikedBy().size());
+            return System.nanoTime() - t0;
+        });
+    }
+
+    private void cleanup(String prefix, Long bookId) {
+        try {
+            if (bookId != null) {
+                jdbcTemplate.update("DELETE l FROM comment_likes l JOIN comments c ON c.id = l.comment_id WHERE c.book_id = ?", bookId);
+                jdbcTemplate.update("DELETE FROM comments WHERE book_id = ?", bookId);
+                jdbcTemplate.update("DELETE FROM books WHERE id = ?", bookId);
+            }
+            jdbcTemplate.update("DELETE l FROM comment_likes l JOIN users u ON u.id = l.user_id WHERE u.username LIKE ?", prefix + "%");
+            jdbcTemplate.update("DELETE FROM users WHERE username LIKE ?", prefix + "%");
+            logger.info("点赞压测结束，临时数据已删除");
+        } catch (Exception e) {
+            logger.error("清理点赞压测数据失败，请手动删除用户名前缀为 {} 的数据", prefix, e);
+        }
+    }
+
+    private long insert(String sql, Object... args) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            return ps;
+        }, keys);
+        return keys.getKey().longValue();
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}